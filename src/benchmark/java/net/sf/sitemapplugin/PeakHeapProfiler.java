@@ -0,0 +1,52 @@
+package net.sf.sitemapplugin;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * Reports the peak heap usage of every measured iteration, summed over all heap memory pools. Enable it with
+ * {@code -prof net.sf.sitemapplugin.PeakHeapProfiler}.
+ */
+public final class PeakHeapProfiler implements InternalProfiler {
+
+	private static final double MEGABYTE = 1024 * 1024;
+
+	@Override
+	public Collection<? extends Result> afterIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams,
+			final IterationResult result) {
+		long peak = 0L;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		return Collections.singletonList(new ScalarResult("heap.peak", peak / MEGABYTE, "MB", AggregationPolicy.MAX));
+	}
+
+	@Override
+	public void beforeIteration(final BenchmarkParams benchmarkParams, final IterationParams iterationParams) {
+		System.gc();
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	@Override
+	public String getDescription() {
+		return "Peak heap usage per iteration";
+	}
+
+}
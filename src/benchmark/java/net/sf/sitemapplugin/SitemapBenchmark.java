@@ -0,0 +1,134 @@
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+/**
+ * Measures how fast the URLs of a site descriptor are extracted and written. Besides the score per invocation the
+ * {@code urls} counter reports the throughput in URLs per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SitemapBenchmark {
+
+	/**
+	 * Counts the URLs which were handled during an iteration.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Counters {
+
+		public long urls;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			urls = 0L;
+		}
+
+	}
+
+	/**
+	 * Sink which hands every URL to the black hole, so only the extraction is measured.
+	 */
+	private static final class BlackholeSink implements UrlSink {
+
+		private final Blackhole blackhole;
+
+		private final Counters counters;
+
+		BlackholeSink(final Blackhole blackhole, final Counters counters) {
+			this.blackhole = blackhole;
+			this.counters = counters;
+		}
+
+		@Override
+		public void add(final SitemapUrl url) {
+			blackhole.consume(url);
+			counters.urls++;
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	/**
+	 * The synthetic site which is shared by all invocations of a trial.
+	 */
+	@State(Scope.Benchmark)
+	public static class Site {
+
+		@Param({ "100", "10000", "1000000" })
+		public int items;
+
+		@Param({ "3" })
+		public int depth;
+
+		@Param({ "10" })
+		public int fanOut;
+
+		DecorationModel model;
+
+		MavenProject project;
+
+		File directory;
+
+		@Setup(Level.Trial)
+		public void create() throws IOException {
+			model = SyntheticDecorationModel.create(items, depth, fanOut);
+			project = new MavenProject();
+			project.setUrl("http://example.org/");
+			directory = File.createTempFile("sitemap-benchmark", "");
+			directory.delete();
+			directory.mkdirs();
+		}
+
+		@TearDown(Level.Trial)
+		public void delete() throws IOException {
+			FileUtils.deleteDirectory(directory);
+		}
+
+	}
+
+	@Benchmark
+	public void extract(final Site site, final Counters counters, final Blackhole blackhole) throws IOException {
+		new Sitemap("UTF-8", null).generate(site.project, site.model, new BlackholeSink(blackhole, counters), ChangeFreq.WEEKLY);
+	}
+
+	@Benchmark
+	public StreamingSitemapWriter extractAndWrite(final Site site, final Counters counters) throws IOException {
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter(site.project.getUrl(), site.directory, "sitemap");
+		writer.setIndexFile(new File(site.directory, Sitemap.INDEX_FILE_NAME));
+		new Sitemap("UTF-8", null).generate(site.project, site.model, writer, ChangeFreq.WEEKLY);
+		writer.finish();
+		counters.urls += writer.getUrlCount();
+		return writer;
+	}
+
+}
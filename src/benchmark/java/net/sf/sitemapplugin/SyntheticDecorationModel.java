@@ -0,0 +1,78 @@
+package net.sf.sitemapplugin;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+
+/**
+ * Builds site descriptors of arbitrary size for the benchmarks.
+ */
+final class SyntheticDecorationModel {
+
+	/**
+	 * Creates a decoration model with a single menu. The menu items are added breadth-first: every item below the
+	 * given depth gets up to {@code fanOut} children, and whenever a tree is complete a new top level item is started
+	 * until the requested number of items is reached.
+	 * 
+	 * @param items
+	 *            the total number of menu items
+	 * @param depth
+	 *            the number of levels of a tree, {@code 1} creates a flat menu
+	 * @param fanOut
+	 *            the maximum number of children of an item
+	 */
+	static DecorationModel create(final int items, final int depth, final int fanOut) {
+		if (depth < 1) {
+			throw new IllegalArgumentException("Argument 'depth' must be positive.");
+		}
+		if (fanOut < 1) {
+			throw new IllegalArgumentException("Argument 'fanOut' must be positive.");
+		}
+
+		final Menu menu = new Menu();
+		final Deque<MenuItem> parents = new ArrayDeque<MenuItem>();
+		final Deque<Integer> levels = new ArrayDeque<Integer>();
+		int created = 0;
+		while (created < items) {
+			if (parents.isEmpty()) {
+				final MenuItem root = createItem(created++);
+				menu.addItem(root);
+				if (depth > 1) {
+					parents.add(root);
+					levels.add(Integer.valueOf(1));
+				}
+				continue;
+			}
+
+			final MenuItem parent = parents.poll();
+			final int level = levels.poll().intValue() + 1;
+			for (int i = 0; i < fanOut && created < items; i++) {
+				final MenuItem child = createItem(created++);
+				parent.addItem(child);
+				if (level < depth) {
+					parents.add(child);
+					levels.add(Integer.valueOf(level));
+				}
+			}
+		}
+
+		final DecorationModel model = new DecorationModel();
+		model.addMenu(menu);
+		return model;
+	}
+
+	private static MenuItem createItem(final int index) {
+		final MenuItem item = new MenuItem();
+		item.setName("Page " + index);
+		item.setHref("section" + index % 100 + "/page" + index + ".html");
+		return item;
+	}
+
+	private SyntheticDecorationModel() {
+		// no instances
+	}
+
+}
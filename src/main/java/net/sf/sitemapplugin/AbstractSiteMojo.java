@@ -17,14 +17,20 @@ package net.sf.sitemapplugin;
 
 import java.io.File;
 import java.util.List;
+import java.util.Locale;
 
 import org.apache.maven.artifact.repository.ArtifactRepository;
 import org.apache.maven.doxia.tools.SiteTool;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.i18n.I18N;
 import org.codehaus.plexus.util.ReaderFactory;
 
+import com.redfin.sitemapgenerator.ChangeFreq;
+import com.redfin.sitemapgenerator.W3CDateFormat;
+import com.redfin.sitemapgenerator.W3CDateFormat.Pattern;
+
 /**
  * Base class for sitemap mojos.
  * 
@@ -32,8 +38,8 @@ import org.codehaus.plexus.util.ReaderFactory;
  */
 public abstract class AbstractSiteMojo extends AbstractMojo {
 	/**
-	 * A comma separated list of locales supported by Maven. The first valid token will be the default Locale for this
-	 * instance of the Java Virtual Machine.
+	 * A comma separated list of locales supported by Maven. The first valid token is the default locale, whose sitemap
+	 * is written to the output directory itself.
 	 * 
 	 * @parameter expression="${locales}"
 	 */
@@ -86,6 +92,50 @@ public abstract class AbstractSiteMojo extends AbstractMojo {
 	 */
 	protected List<MavenProject> reactorProjects;
 
+	/**
+	 * Directory where the project sites and report distributions will be generated.
+	 * 
+	 * @parameter expression="${siteOutputDirectory}" default-value="${project.reporting.outputDirectory}"
+	 */
+	protected File outputDirectory;
+
+	/**
+	 * Whether to validate xml input documents. If set to true, <strong>all</strong> input documents in xml format (in
+	 * particular xdoc and fml) will be validated and any error will lead to a build failure.
+	 * 
+	 * @parameter expression="${validate}" default-value="false"
+	 */
+	protected boolean validate;
+
+	/**
+	 * Set this to 'true' to skip site generation.
+	 * 
+	 * @parameter expression="${maven.sitemap.skip}" default-value="false"
+	 */
+	protected boolean skip;
+
+	/**
+	 * How frequently the site is likely to change.
+	 * 
+	 * @parameter expression="${changeFreq}" default-value="MONTHLY"
+	 */
+	private String changeFreq;
+
+	/**
+	 * Whether to compress the sitemap files with gzip, the files are then named {@code *.xml.gz}.
+	 * 
+	 * @parameter expression="${maven.sitemap.compress}" default-value="false"
+	 */
+	private boolean compress;
+
+	/**
+	 * The gzip compression level from 0 (no compression) to 9 (best compression), only used if {@code compress} is
+	 * switched on.
+	 * 
+	 * @parameter expression="${maven.sitemap.compressionLevel}" default-value="6"
+	 */
+	private int compressionLevel;
+
 	/**
 	 * Specifies the input encoding.
 	 * 
@@ -100,6 +150,62 @@ public abstract class AbstractSiteMojo extends AbstractMojo {
 	 */
 	private String outputEncoding;
 
+	/**
+	 * Whether the sitemap files are validated while they are written instead of parsing them again against the XML
+	 * schema, only used if {@code validate} is switched on. Every URL is checked when it is added and an invalid URL
+	 * is reported together with the menu item it comes from.
+	 * 
+	 * @parameter expression="${maven.sitemap.streamingValidation}" default-value="false"
+	 */
+	private boolean streamingValidation;
+
+	/**
+	 * Creates a writer for sitemap files which uses the date format, the (streaming) validation and the compression of this mojo.
+	 * 
+	 * @param baseUrl
+	 *            the URL the sitemap files are published at
+	 * @param outputDir
+	 *            the directory to write the files to
+	 * @param fileNamePrefix
+	 *            the name of the files without extension
+	 * @return the writer
+	 */
+	protected StreamingSitemapWriter createSitemapWriter(final String baseUrl, final File outputDir, final String fileNamePrefix) {
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter(baseUrl, outputDir, fileNamePrefix);
+		writer.setDateFormat(new W3CDateFormat(Pattern.DAY));
+		writer.setValidate(validate && !streamingValidation);
+		writer.setStreamingValidation(validate && streamingValidation);
+		writer.setCompressionLevel(getCompressionLevel());
+		return writer;
+	}
+
+	/**
+	 * Gets the configured change frequency.
+	 * 
+	 * @return the change frequency, never <code>null</code>.
+	 * @throws MojoExecutionException
+	 *             if the change frequency is not set or unknown
+	 */
+	protected ChangeFreq getChangeFreq() throws MojoExecutionException {
+		if (changeFreq == null) {
+			throw new MojoExecutionException("Change frequency must be set.");
+		}
+		try {
+			return ChangeFreq.valueOf(changeFreq.toUpperCase(Locale.ENGLISH));
+		} catch (final IllegalArgumentException e) {
+			throw new MojoExecutionException("Change frequency '" + changeFreq + "' is wrong.", e);
+		}
+	}
+
+	/**
+	 * Gets the compression level to write the sitemap files with.
+	 * 
+	 * @return the compression level or {@link StreamingSitemapWriter#NO_COMPRESSION} if compression is switched off.
+	 */
+	protected int getCompressionLevel() {
+		return compress ? compressionLevel : StreamingSitemapWriter.NO_COMPRESSION;
+	}
+
 	/**
 	 * Gets the input files encoding.
 	 * 
@@ -109,6 +215,32 @@ public abstract class AbstractSiteMojo extends AbstractMojo {
 		return (inputEncoding == null) ? ReaderFactory.ISO_8859_1 : inputEncoding;
 	}
 
+	/**
+	 * Gets the directory the sitemap of the given locale is written to. The default locale is written to the output
+	 * directory itself, all other locales to a subdirectory named after their language.
+	 * 
+	 * @param locale
+	 *            the locale of the sitemap
+	 * @param defaultLocale
+	 *            the default locale of the site, the first of {@code locales}
+	 * @return the existing output directory
+	 */
+	protected File getOutputDirectory(final Locale locale, final Locale defaultLocale) {
+		File file;
+		if (locale.getLanguage().equals(defaultLocale.getLanguage())) {
+			file = outputDirectory;
+		} else {
+			file = new File(outputDirectory, locale.getLanguage());
+		}
+
+		// Safety
+		if (!file.exists()) {
+			file.mkdirs();
+		}
+
+		return file;
+	}
+
 	/**
 	 * Gets the effective reporting output files encoding.
 	 * 
@@ -31,6 +31,7 @@ import org.apache.maven.doxia.tools.SiteToolException;
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
 import org.codehaus.plexus.PlexusConstants;
 import org.codehaus.plexus.context.Context;
 import org.codehaus.plexus.context.ContextException;
@@ -42,7 +43,6 @@ import org.codehaus.plexus.personality.plexus.lifecycle.phase.Contextualizable;
  * @author <a href="mailto:brett@apache.org">Brett Porter</a>
  */
 public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo implements Contextualizable {
-
 	/**
 	 * Remote repositories used for the project.
 	 * 
@@ -75,6 +75,26 @@ public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo impleme
 	 */
 	protected Renderer siteRenderer;
 
+	/**
+	 * Whether to cache the resolved decoration models across builds, so that the parent site descriptors are only
+	 * resolved and merged again if the site descriptor, the POM or one of the parents changed. The cache is kept in
+	 * {@code decorationModelCacheDirectory}.
+	 * 
+	 * @parameter expression="${maven.sitemap.cacheDecorationModels}" default-value="false"
+	 */
+	private boolean cacheDecorationModels;
+
+	/**
+	 * Directory of the decoration models cached across builds. It may be shared by several builds running at the same
+	 * time.
+	 * 
+	 * @parameter expression="${maven.sitemap.decorationModelCacheDirectory}"
+	 *            default-value="${localRepository.basedir}/.cache/sitemap-plugin/decoration"
+	 */
+	private File decorationModelCacheDirectory;
+
+	private PersistentDecorationModelCache decorationModelCache;
+
 	/**
 	 * Directory containing generated documentation. This is used to pick up other source docs that might have been
 	 * generated at build time.
@@ -100,11 +120,14 @@ public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo impleme
 		context.get(PlexusConstants.PLEXUS_KEY);
 	}
 
-	protected SiteRenderingContext createSiteRenderingContext(final Locale locale) throws MojoExecutionException, IOException,
-			MojoFailureException {
-		if (attributes == null) {
-			attributes = new HashMap<String, Object>();
-		}
+	/**
+	 * Creates the template properties that are shared by the rendering contexts of all locales.
+	 * 
+	 * @return a new map containing the configured attributes and the project properties
+	 */
+	protected Map<String, Object> createAttributes() {
+		final Map<String, Object> attributes = this.attributes == null ? new HashMap<String, Object>() : new HashMap<String, Object>(
+				this.attributes);
 
 		if (attributes.get("project") == null) {
 			attributes.put("project", project);
@@ -123,14 +146,64 @@ public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo impleme
 			attributes.put((String) entry.getKey(), entry.getValue());
 		}
 
-		DecorationModel decorationModel;
-		try {
-			decorationModel = siteTool.getDecorationModel(project, reactorProjects, localRepository, repositories,
-					siteTool.getRelativePath(siteDirectory.getAbsolutePath(), project.getBasedir().getAbsolutePath()), locale,
-					getInputEncoding(), getOutputEncoding());
-		} catch (final SiteToolException e) {
-			throw new MojoExecutionException("SiteToolException: " + e.getMessage(), e);
+		return attributes;
+	}
+
+	/**
+	 * Creates the key of a decoration model in the persistent cache. Besides the locale and the encodings it covers the
+	 * POM and site descriptor of the module and the coordinates of all parents. The POM and site descriptor of every
+	 * parent found on disk are covered as well, because a reactor parent can change without a new version, whatever its
+	 * version looks like. Only released parents may be used by their coordinates alone.
+	 * 
+	 * @return the key or {@code null} if the decoration model can not be cached safely
+	 */
+	private String createDecorationModelCacheKey(final MavenProject module, final Locale locale) throws IOException {
+		final String relativeSiteDirectory = getRelativeSiteDirectory();
+		final SitemapFingerprint fingerprint = new SitemapFingerprint();
+		fingerprint.putValue("locale", locale.toString());
+		fingerprint.putValue("encodings", getInputEncoding() + '|' + getOutputEncoding());
+		fingerprint.putValue("siteDirectory", relativeSiteDirectory);
+		fingerprint.putValue("module", module.getId());
+		fingerprint.putFile("pom", module.getFile());
+		fingerprint.putFile("descriptor", siteTool.getSiteDescriptorFromBasedir(relativeSiteDirectory, module.getBasedir(), locale));
+		int depth = 0;
+		for (MavenProject parent = module.getParent(); parent != null; parent = parent.getParent()) {
+			depth++;
+			fingerprint.putValue("parent" + depth, parent.getId());
+			if (parent.getFile() != null && parent.getBasedir() != null) {
+				fingerprint.putFile("parentPom" + depth, parent.getFile());
+				fingerprint.putFile("parentDescriptor" + depth,
+						siteTool.getSiteDescriptorFromBasedir(relativeSiteDirectory, parent.getBasedir(), locale));
+			} else if (parent.getVersion() == null || parent.getVersion().endsWith(Artifact.SNAPSHOT_VERSION)) {
+				return null;
+			}
 		}
+		return fingerprint.getHash();
+	}
+
+	protected SiteRenderingContext createSiteRenderingContext(final Locale locale, final Locale defaultLocale,
+			final Map<String, Object> sharedAttributes) throws MojoExecutionException, IOException, MojoFailureException {
+		return createSiteRenderingContext(locale, defaultLocale, sharedAttributes, getDecorationModel(locale));
+	}
+
+	/**
+	 * Creates the rendering context for an already resolved decoration model, which resolves the skin of the site.
+	 * 
+	 * @param locale
+	 *            the locale of the site
+	 * @param defaultLocale
+	 *            the default locale, whose site is not located in a subdirectory
+	 * @param sharedAttributes
+	 *            the template properties, see {@link #createAttributes()}
+	 * @param decorationModel
+	 *            the decoration model of the locale
+	 * @return the rendering context
+	 */
+	protected SiteRenderingContext createSiteRenderingContext(final Locale locale, final Locale defaultLocale,
+			final Map<String, Object> sharedAttributes, final DecorationModel decorationModel) throws MojoExecutionException, IOException,
+			MojoFailureException {
+		// Work on a copy, this method may be called for several locales at the same time
+		final Map<String, Object> attributes = new HashMap<String, Object>(sharedAttributes);
 
 		File skinFile;
 		try {
@@ -152,7 +225,7 @@ public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo impleme
 		}
 
 		// Generate static site
-		if (!locale.getLanguage().equals(Locale.getDefault().getLanguage())) {
+		if (!locale.getLanguage().equals(defaultLocale.getLanguage())) {
 			context.addSiteDirectory(new File(siteDirectory, locale.getLanguage()));
 		} else {
 			context.addSiteDirectory(siteDirectory);
@@ -161,4 +234,92 @@ public abstract class AbstractSiteRenderingMojo extends AbstractSiteMojo impleme
 		return context;
 	}
 
+	/**
+	 * Resolves the effective decoration model of the project, including the menus inherited from its parents.
+	 * 
+	 * @param locale
+	 *            the locale of the site descriptor
+	 * @return the decoration model
+	 * @throws MojoExecutionException
+	 *             if the site descriptor can not be resolved
+	 */
+	protected DecorationModel getDecorationModel(final Locale locale) throws MojoExecutionException {
+		return getDecorationModel(project, locale);
+	}
+
+	/**
+	 * Resolves the effective decoration model of the given reactor project. The site descriptor is looked up at the
+	 * same location relative to the project base directory as for the current project.
+	 * 
+	 * @param module
+	 *            the project to resolve the decoration model for
+	 * @param locale
+	 *            the locale of the site descriptor
+	 * @return the decoration model
+	 * @throws MojoExecutionException
+	 *             if the site descriptor can not be resolved
+	 */
+	protected DecorationModel getDecorationModel(final MavenProject module, final Locale locale) throws MojoExecutionException {
+		final PersistentDecorationModelCache cache = getDecorationModelCache();
+		String key = null;
+		if (cache != null) {
+			try {
+				key = createDecorationModelCacheKey(module, locale);
+			} catch (final IOException e) {
+				getLog().debug("Can not create the cache key of the decoration model: " + e.getMessage());
+			}
+		}
+		if (key != null) {
+			final DecorationModel cached = cache.get(key);
+			if (cached != null) {
+				if (getLog().isDebugEnabled()) {
+					getLog().debug("Using cached decoration model of " + module.getId() + " for locale '" + locale + "'.");
+				}
+				return cached;
+			}
+		}
+
+		final DecorationModel model;
+		try {
+			model = siteTool.getDecorationModel(module, reactorProjects, localRepository, repositories, getRelativeSiteDirectory(),
+					locale, getInputEncoding(), getOutputEncoding());
+		} catch (final SiteToolException e) {
+			throw new MojoExecutionException("SiteToolException: " + e.getMessage(), e);
+		}
+
+		if (key != null) {
+			try {
+				cache.put(key, model);
+			} catch (final IOException e) {
+				getLog().warn("Can not cache the decoration model of " + module.getId() + ": " + e.getMessage());
+			}
+		}
+		return model;
+	}
+
+	/**
+	 * Gets the persistent decoration model cache, which is pruned when it is first used.
+	 * 
+	 * @return the cache or {@code null} if caching is switched off
+	 */
+	private synchronized PersistentDecorationModelCache getDecorationModelCache() {
+		if (decorationModelCache == null && cacheDecorationModels && decorationModelCacheDirectory != null) {
+			decorationModelCache = new PersistentDecorationModelCache(decorationModelCacheDirectory);
+			final int pruned = decorationModelCache.prune(PersistentDecorationModelCache.MAX_AGE);
+			if (pruned > 0 && getLog().isDebugEnabled()) {
+				getLog().debug("Removed " + pruned + " unused decoration model(s) from " + decorationModelCacheDirectory + ".");
+			}
+		}
+		return decorationModelCache;
+	}
+
+	/**
+	 * Gets the site directory relative to the base directory of the current project.
+	 * 
+	 * @return the relative path of the site directory
+	 */
+	protected String getRelativeSiteDirectory() {
+		return siteTool.getRelativePath(siteDirectory.getAbsolutePath(), project.getBasedir().getAbsolutePath());
+	}
+
 }
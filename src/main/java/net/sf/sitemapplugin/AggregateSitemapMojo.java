@@ -0,0 +1,230 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.project.MavenProject;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+import com.redfin.sitemapgenerator.W3CDateFormat;
+import com.redfin.sitemapgenerator.W3CDateFormat.Pattern;
+
+/**
+ * Generates one sitemap index for all projects of the reactor.
+ * <p>
+ * Every module gets its own sitemap shard named after its artifact id, or its group id and artifact id if several
+ * modules share the artifact id. All shards are listed in a single {@code sitemap_index.xml} in the output directory
+ * of the execution root. A URL which is listed by more than one module, as it happens with menus inherited from a
+ * parent, appears only in the shard of the first module.
+ * </p>
+ * <p>
+ * The decoration model of every module is resolved on its own, as the site tool interpolates the inherited menus with
+ * the properties of the module. Within a build, Maven resolves the parent projects and their site descriptors only
+ * once. To skip the resolution in repeated builds of a large reactor, switch on {@code cacheDecorationModels}.
+ * </p>
+ * 
+ * @goal aggregate
+ * @phase site
+ * @aggregator
+ * @threadSafe
+ */
+public final class AggregateSitemapMojo extends AbstractSiteRenderingMojo {
+
+	private static String withTrailingSlash(final String url) {
+		return url.endsWith("/") ? url : url + "/";
+	}
+
+	/**
+	 * Deletes the sitemaps of modules which left the reactor or now write fewer shards, so that they are not deployed.
+	 */
+	private void deleteStaleSitemaps(final File outputDir, final Set<String> written) {
+		final String[] names = outputDir.list();
+		if (names == null) {
+			return;
+		}
+		for (final String name : names) {
+			if (name.startsWith("sitemap-") && (name.endsWith(".xml") || name.endsWith(".xml.gz")) && !written.contains(name)) {
+				final File file = new File(outputDir, name);
+				if (file.delete()) {
+					getLog().info("Deleted stale Sitemap: " + file.getPath());
+				}
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Generate the sitemap index of the reactor
+	 * <p/>
+	 * throws MojoExecutionException if any
+	 * 
+	 * @see org.apache.maven.plugin.Mojo#execute()
+	 */
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("maven.sitemap.skip = true: Skipping site generation");
+			return;
+		}
+
+		if (project.getUrl() == null) {
+			throw new MojoFailureException("The URL of project '" + project.getId() + "' must be set to generate a sitemap index.");
+		}
+
+		try {
+			final List<Locale> localesList = siteTool.getAvailableLocales(locales);
+
+			// Default is first in the list
+			final Locale defaultLocale = localesList.get(0);
+
+			final Map<String, SourceTimestampIndex> timestamps = new HashMap<String, SourceTimestampIndex>();
+			for (final Locale locale : localesList) {
+				render(locale, defaultLocale, timestamps);
+			}
+		} catch (final MojoExecutionException e) {
+			throw e;
+		} catch (final Exception e) {
+			throw new MojoExecutionException("Error during sitemap index generation", e);
+		}
+	}
+
+	/**
+	 * Gets the name of the sitemap of a module without extension, which is qualified with the group id if another
+	 * module of the reactor has the same artifact id.
+	 */
+	private String getSitemapName(final MavenProject module) {
+		for (final MavenProject other : reactorProjects) {
+			if (other != module && other.getArtifactId().equals(module.getArtifactId())) {
+				return "sitemap-" + module.getGroupId() + "." + module.getArtifactId();
+			}
+		}
+		return "sitemap-" + module.getArtifactId();
+	}
+
+	/**
+	 * Gets the index of the source documents of a module, which is built only once for all locales.
+	 */
+	private SourceTimestampIndex getTimestampIndex(final MavenProject module, final Map<String, SourceTimestampIndex> timestamps) {
+		SourceTimestampIndex index = timestamps.get(module.getId());
+		if (index == null) {
+			final File moduleSiteDirectory = new File(module.getBasedir(), getRelativeSiteDirectory());
+			final File moduleGeneratedSiteDirectory = new File(module.getBuild().getDirectory(), generatedSiteDirectory.getName());
+			index = SourceTimestampIndex.build(moduleSiteDirectory, moduleGeneratedSiteDirectory);
+			timestamps.put(module.getId(), index);
+		}
+		return index;
+	}
+
+	private void render(final Locale locale, final Locale defaultLocale, final Map<String, SourceTimestampIndex> timestamps)
+			throws IOException, MojoExecutionException {
+		final ChangeFreq changeFreq = getChangeFreq();
+		final File outputDir = getOutputDirectory(locale, defaultLocale);
+		String baseUrl = withTrailingSlash(project.getUrl());
+		if (!outputDir.equals(outputDirectory)) {
+			baseUrl += locale.getLanguage() + "/";
+		}
+
+		final W3CDateFormat dateFormat = new W3CDateFormat(Pattern.DAY);
+		final Sitemap sitemap = new Sitemap(getOutputEncoding(), i18n);
+		if (!outputDir.equals(outputDirectory)) {
+			sitemap.setLanguage(locale.getLanguage());
+		}
+		final CompactUrlSet seen = new CompactUrlSet();
+		int duplicates = 0;
+		final File indexFile = new File(outputDir, Sitemap.INDEX_FILE_NAME);
+		final File tempIndexFile = FileReplacer.tempFile(indexFile);
+		final Set<String> written = new HashSet<String>();
+		SitemapIndexWriter index = null;
+		try {
+			try {
+				for (final MavenProject module : reactorProjects) {
+					if (module.getUrl() == null) {
+						getLog().warn("Project '" + module.getId() + "' has no URL, it is not listed in the sitemap index.");
+						continue;
+					}
+
+					final StreamingSitemapWriter writer = createSitemapWriter(baseUrl, outputDir, getSitemapName(module));
+					sitemap.setTimestampIndex(getTimestampIndex(module, timestamps));
+					final NormalizingUrlSink sink = new NormalizingUrlSink(seen, writer);
+					try {
+						// Every module resolves its own model, even if it inherits the site descriptor: the parent menus are
+						// interpolated with the properties of the module and expanded with its own modules and parent links
+						sitemap.generate(module, getDecorationModel(module, locale), sink, changeFreq);
+						sink.finish();
+					} finally {
+						writer.abort();
+					}
+					duplicates += sink.getDuplicateCount();
+					if (writer.getFiles().isEmpty()) {
+						getLog().debug("Project '" + module.getId() + "' adds no new URLs, no sitemap generated.");
+						continue;
+					}
+
+					if (index == null) {
+						index = new SitemapIndexWriter(tempIndexFile, dateFormat);
+					}
+					for (final File file : writer.getFiles()) {
+						if (!written.add(file.getName())) {
+							throw new MojoExecutionException("Sitemap '" + file.getName() + "' of project '" + module.getId()
+									+ "' was already written for another project of the reactor.");
+						}
+						index.add(baseUrl + file.getName(), file.lastModified());
+						getLog().info("Generated Sitemap: " + file.getPath());
+					}
+				}
+			} finally {
+				if (index != null) {
+					index.close();
+				}
+			}
+
+			if (duplicates > 0) {
+				getLog().info("Dropped " + duplicates + " URL(s) listed by more than one module.");
+			}
+			deleteStaleSitemaps(outputDir, written);
+			if (index == null) {
+				if (indexFile.delete()) {
+					getLog().info("Deleted stale Sitemap index: " + indexFile.getPath());
+				}
+				getLog().warn("No URLs found in the reactor, no sitemap index generated.");
+				return;
+			}
+			if (validate) {
+				StreamingSitemapWriter.validate(tempIndexFile, true);
+			}
+			if (FileReplacer.replace(tempIndexFile, null, indexFile)) {
+				getLog().info("Generated Sitemap index: " + indexFile.getPath());
+			} else {
+				getLog().info("Sitemap index is unchanged: " + indexFile.getPath());
+			}
+		} finally {
+			// The temporary index only remains if it could not be completed or moved into place
+			tempIndexFile.delete();
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+
+/**
+ * Checks the URLs with the rules of a {@link StreamingSitemapWriter} before they reach sinks which buffer them, e.g. a
+ * {@link SortingUrlSink}. An invalid URL is then rejected by {@link #add(SitemapUrl)} while the caller still knows
+ * where it comes from, instead of by the {@code finish()} of the buffering sink.
+ */
+final class CheckingUrlSink implements UrlSink {
+
+	private final UrlSink delegate;
+
+	private final StreamingSitemapWriter writer;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param writer
+	 *            the writer whose rules the URLs are checked with
+	 * @param delegate
+	 *            the sink receiving the valid URLs
+	 */
+	CheckingUrlSink(final StreamingSitemapWriter writer, final UrlSink delegate) {
+		this.writer = writer;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		writer.check(url);
+		delegate.add(url);
+	}
+
+	@Override
+	public void finish() throws IOException {
+		delegate.finish();
+	}
+
+}
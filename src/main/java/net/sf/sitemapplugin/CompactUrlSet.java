@@ -0,0 +1,179 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+/**
+ * A set of URLs which stores every element as UTF-8 bytes in large shared chunks instead of as separate {@code String}
+ * objects.
+ * <p>
+ * The elements are located through an open addressing hash table of chunk positions, with the hash code of every
+ * element kept next to it, so most mismatches are rejected without comparing bytes. Compared to a
+ * {@code HashSet<String>} this needs a fraction of the memory and creates no objects per element, which makes it
+ * suitable for millions of URLs. This class is not thread-safe.
+ * </p>
+ */
+final class CompactUrlSet {
+
+	private static final int CHUNK_SIZE = 1 << 20;
+
+	private static final int INITIAL_CAPACITY = 1 << 10;
+
+	private static final int LENGTH_BYTES = 4;
+
+	private static int hash(final byte[] bytes, final int length) {
+		// FNV-1a
+		int hash = 0x811c9dc5;
+		for (int i = 0; i < length; i++) {
+			hash ^= bytes[i] & 0xff;
+			hash *= 0x01000193;
+		}
+		return hash;
+	}
+
+	private static int readLength(final byte[] chunk, final int offset) {
+		return (chunk[offset] & 0xff) << 24 | (chunk[offset + 1] & 0xff) << 16 | (chunk[offset + 2] & 0xff) << 8 | chunk[offset + 3]
+				& 0xff;
+	}
+
+	private byte[][] chunks = new byte[4][];
+
+	private int chunkCount;
+
+	private int chunkPosition;
+
+	private int[] hashes = new int[INITIAL_CAPACITY];
+
+	private byte[] scratch = new byte[256];
+
+	private int size;
+
+	/**
+	 * Positions of the elements, the chunk index in the upper and the offset in the lower 32 bits, plus one so that
+	 * {@code 0} marks an empty slot.
+	 */
+	private long[] slots = new long[INITIAL_CAPACITY];
+
+	/**
+	 * Adds a URL to this set.
+	 * 
+	 * @param url
+	 *            the URL to add
+	 * @return {@code true} if the set did not already contain the URL
+	 */
+	boolean add(final String url) {
+		final int length = encode(url);
+		final int hash = hash(scratch, length);
+		final int mask = slots.length - 1;
+		int index = hash & mask;
+		while (slots[index] != 0L) {
+			if (hashes[index] == hash && equalsAt(slots[index] - 1, length)) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+
+		slots[index] = store(length) + 1;
+		hashes[index] = hash;
+		if (++size * 2 > slots.length) {
+			rehash();
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes the URL as UTF-8 into the scratch buffer.
+	 * 
+	 * @return the number of bytes
+	 */
+	private int encode(final String url) {
+		final int maxLength = Utf8.maxLength(url.length());
+		if (scratch.length < maxLength) {
+			scratch = new byte[Math.max(maxLength, scratch.length * 2)];
+		}
+		return Utf8.encode(url, scratch);
+	}
+
+	private boolean equalsAt(final long position, final int length) {
+		final byte[] chunk = chunks[(int) (position >>> 32)];
+		int offset = (int) position;
+		if (readLength(chunk, offset) != length) {
+			return false;
+		}
+		offset += LENGTH_BYTES;
+		for (int i = 0; i < length; i++) {
+			if (chunk[offset + i] != scratch[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void rehash() {
+		final long[] oldSlots = slots;
+		final int[] oldHashes = hashes;
+		slots = new long[oldSlots.length * 2];
+		hashes = new int[oldHashes.length * 2];
+		final int mask = slots.length - 1;
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] != 0L) {
+				int index = oldHashes[i] & mask;
+				while (slots[index] != 0L) {
+					index = (index + 1) & mask;
+				}
+				slots[index] = oldSlots[i];
+				hashes[index] = oldHashes[i];
+			}
+		}
+	}
+
+	/**
+	 * Get the number of URLs in this set.
+	 * 
+	 * @return the number of URLs.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Appends the scratch buffer with its length to the current chunk, starting a new chunk if it does not fit.
+	 * 
+	 * @return the position of the stored element
+	 */
+	private long store(final int length) {
+		final int required = LENGTH_BYTES + length;
+		if (chunkCount == 0 || chunkPosition + required > chunks[chunkCount - 1].length) {
+			if (chunkCount == chunks.length) {
+				final byte[][] grown = new byte[chunks.length * 2][];
+				System.arraycopy(chunks, 0, grown, 0, chunks.length);
+				chunks = grown;
+			}
+			chunks[chunkCount++] = new byte[Math.max(CHUNK_SIZE, required)];
+			chunkPosition = 0;
+		}
+
+		final byte[] chunk = chunks[chunkCount - 1];
+		final int offset = chunkPosition;
+		chunk[offset] = (byte) (length >>> 24);
+		chunk[offset + 1] = (byte) (length >>> 16);
+		chunk[offset + 2] = (byte) (length >>> 8);
+		chunk[offset + 3] = (byte) length;
+		System.arraycopy(scratch, 0, chunk, offset + LENGTH_BYTES, length);
+		chunkPosition += required;
+		return (long) (chunkCount - 1) << 32 | offset;
+	}
+
+}
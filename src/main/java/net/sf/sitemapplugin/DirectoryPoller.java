@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Detects changed files in a directory tree by comparing snapshots of their modification times and sizes.
+ * <p>
+ * A change is only noticed if it alters the modification time or the size of a file, so two saves of a file with the
+ * same size within the timestamp resolution of the file system are seen as one.
+ * </p>
+ */
+final class DirectoryPoller {
+
+	private final File directory;
+
+	/**
+	 * The modification time and the size of every file, by path.
+	 */
+	private Map<String, long[]> snapshot;
+
+	/**
+	 * Constructor takes the first snapshot of the directory.
+	 * 
+	 * @param directory
+	 *            the directory to watch
+	 */
+	DirectoryPoller(final File directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' must not be null.");
+		}
+		this.directory = directory;
+		snapshot = scan();
+	}
+
+	/**
+	 * Takes a new snapshot and compares it with the previous one.
+	 * 
+	 * @return the paths relative to the directory, separated by {@code /}, of all files which were added, changed or
+	 *         removed since the previous call
+	 */
+	List<String> poll() {
+		final Map<String, long[]> current = scan();
+		final List<String> changed = new ArrayList<String>();
+		for (final Map.Entry<String, long[]> file : current.entrySet()) {
+			if (!Arrays.equals(file.getValue(), snapshot.get(file.getKey()))) {
+				changed.add(file.getKey());
+			}
+		}
+		for (final String path : snapshot.keySet()) {
+			if (!current.containsKey(path)) {
+				changed.add(path);
+			}
+		}
+		snapshot = current;
+		return changed;
+	}
+
+	private Map<String, long[]> scan() {
+		final Map<String, long[]> files = new HashMap<String, long[]>();
+		final int prefix = directory.getPath().length() + 1;
+		final Deque<File> directories = new ArrayDeque<File>();
+		directories.push(directory);
+		while (!directories.isEmpty()) {
+			final File[] children = directories.pop().listFiles();
+			if (children == null) {
+				continue;
+			}
+			for (final File child : children) {
+				if (child.isDirectory()) {
+					directories.push(child);
+				} else {
+					final String path = child.getPath().substring(prefix).replace(File.separatorChar, '/');
+					files.put(path, new long[] { child.lastModified(), child.length() });
+				}
+			}
+		}
+		return files;
+	}
+
+}
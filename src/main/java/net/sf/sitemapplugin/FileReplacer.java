@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Moves freshly written files to their final location, keeping files whose content did not change.
+ * <p>
+ * A file is written to a temporary file next to its target while its hash is computed on the fly. If the target
+ * exists with the same hash the temporary file is dropped, so the target keeps its content and modification time and
+ * deployments based on rsync or wagon do not upload it again. Otherwise the temporary file is renamed to the target,
+ * so readers never see a partially written file.
+ * </p>
+ */
+final class FileReplacer {
+
+	/**
+	 * Extension of the temporary files.
+	 */
+	static final String TEMP_EXTENSION = ".tmp";
+
+	/**
+	 * Creates the digest used to compare the content of files.
+	 * 
+	 * @return a new SHA-1 digest
+	 */
+	static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this JVM.", e);
+		}
+	}
+
+	/**
+	 * Computes the hash of a file, reading it in chunks.
+	 * 
+	 * @param file
+	 *            the file to hash
+	 * @return the hash of the content
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	static byte[] digest(final File file) throws IOException {
+		final MessageDigest digest = createDigest();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[64 * 1024];
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Moves a temporary file to its target unless the target already has the same content.
+	 * 
+	 * @param temp
+	 *            the freshly written file
+	 * @param hash
+	 *            the hash of the temporary file as computed by {@link #createDigest()}, or {@code null} to compute it
+	 * @param target
+	 *            the file to replace
+	 * @return {@code true} if the target was replaced, {@code false} if it was left untouched
+	 * @throws IOException
+	 *             if the target can not be replaced, the temporary file is deleted then
+	 */
+	static boolean replace(final File temp, final byte[] hash, final File target) throws IOException {
+		if (target.isFile() && target.length() == temp.length()
+				&& Arrays.equals(hash == null ? digest(temp) : hash, digest(target))) {
+			if (!temp.delete()) {
+				throw new IOException("Can not delete '" + temp + "'.");
+			}
+			return false;
+		}
+		// Replaces the target atomically where the platform supports it, Windows refuses to rename onto an existing file
+		if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+			temp.delete();
+			throw new IOException("Can not rename '" + temp + "' to '" + target + "'.");
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the temporary file a target is written to before it is moved into place.
+	 * 
+	 * @param target
+	 *            the final file
+	 * @return the temporary file in the same directory
+	 */
+	static File tempFile(final File target) {
+		return new File(target.getPath() + TEMP_EXTENSION);
+	}
+
+	private FileReplacer() {
+	}
+
+}
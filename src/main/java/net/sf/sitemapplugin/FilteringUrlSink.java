@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Passes only the URLs through which are accepted by a {@link UrlFilter} and counts the matches of its rules.
+ * <p>
+ * The filter sees the path of a URL relative to the base URL, without query. URLs outside the base URL are matched
+ * by the path following their host.
+ * </p>
+ */
+final class FilteringUrlSink implements UrlSink {
+
+	/**
+	 * Gets the path of a URL which the filter patterns are matched against.
+	 * 
+	 * @param baseUrl
+	 *            the base URL ending with a slash
+	 * @param location
+	 *            the URL
+	 * @return the path without leading slash and query
+	 */
+	static String getPath(final String baseUrl, final String location) {
+		int start;
+		if (location.startsWith(baseUrl)) {
+			start = baseUrl.length();
+		} else {
+			final int schemeEnd = location.indexOf("://");
+			start = schemeEnd < 0 ? 0 : location.indexOf('/', schemeEnd + 3);
+			if (start < 0) {
+				return "";
+			}
+		}
+		int end = location.indexOf('?', start);
+		if (end < 0) {
+			end = location.length();
+		}
+		return location.substring(start, end);
+	}
+
+	private final String baseUrl;
+
+	private final UrlSink delegate;
+
+	private int droppedCount;
+
+	private final UrlFilter filter;
+
+	private final int[] matchCounts;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param baseUrl
+	 *            the URL the filter patterns are relative to, which is normalized like the locations of the URLs
+	 * @param filter
+	 *            the compiled patterns
+	 * @param delegate
+	 *            the sink receiving the accepted URLs
+	 */
+	FilteringUrlSink(final String baseUrl, final UrlFilter filter, final UrlSink delegate) {
+		final String normalized = NormalizingUrlSink.normalize(baseUrl);
+		this.baseUrl = normalized.endsWith("/") ? normalized : normalized + "/";
+		this.filter = filter;
+		this.delegate = delegate;
+		matchCounts = new int[filter.getRules().size()];
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		if (filter.accept(getPath(baseUrl, url.getLocation()), matchCounts)) {
+			delegate.add(url);
+		} else {
+			droppedCount++;
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		delegate.finish();
+	}
+
+	/**
+	 * Get the number of dropped URLs.
+	 * 
+	 * @return the number of URLs which were not included or excluded.
+	 */
+	int getDroppedCount() {
+		return droppedCount;
+	}
+
+	/**
+	 * Gets the number of URLs each rule matched. An exclude rule is only checked for included URLs.
+	 * 
+	 * @return the counts by rule, in the order of {@link UrlFilter#getRules()}
+	 */
+	Map<String, Integer> getMatchCounts() {
+		final List<String> rules = filter.getRules();
+		final Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		for (int i = 0; i < rules.size(); i++) {
+			counts.put(rules.get(i), Integer.valueOf(matchCounts[i]));
+		}
+		return counts;
+	}
+
+}
@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.net.MalformedURLException;
+import java.util.Date;
+
+import com.redfin.sitemapgenerator.WebSitemapGenerator;
+import com.redfin.sitemapgenerator.WebSitemapUrl.Options;
+
+/**
+ * Adds the URLs to a {@code WebSitemapGenerator}, which keeps them in memory until it is written.
+ */
+final class GeneratorUrlSink implements UrlSink {
+
+	private final WebSitemapGenerator generator;
+
+	GeneratorUrlSink(final WebSitemapGenerator generator) {
+		this.generator = generator;
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws MalformedURLException {
+		final Options options = new Options(url.getLocation());
+		if (url.getLastModified() != 0L) {
+			options.lastMod(new Date(url.getLastModified()));
+		}
+		if (url.getChangeFreq() != null) {
+			options.changeFreq(url.getChangeFreq());
+		}
+		if (url.getPriority() != null) {
+			options.priority(url.getPriority());
+		}
+		generator.addUrl(options.build());
+	}
+
+	/**
+	 * Does nothing, the generator is written by its owner.
+	 */
+	@Override
+	public void finish() {
+		// nothing to complete
+	}
+
+}
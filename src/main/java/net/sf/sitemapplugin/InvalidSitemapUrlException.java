@@ -0,0 +1,92 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+
+/**
+ * Signals a URL which violates the Sitemap protocol, detected while the URL is written.
+ */
+public final class InvalidSitemapUrlException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String location;
+
+	private final String menuPath;
+
+	private final String reason;
+
+	/**
+	 * Constructor for a URL whose origin is not known.
+	 * 
+	 * @param location
+	 *            the invalid URL
+	 * @param reason
+	 *            the violated rule
+	 */
+	public InvalidSitemapUrlException(final String location, final String reason) {
+		this(location, reason, null);
+	}
+
+	private InvalidSitemapUrlException(final String location, final String reason, final String menuPath) {
+		super("Invalid sitemap URL '" + location + "'" + (menuPath == null ? "" : " in menu '" + menuPath + "'") + ": " + reason);
+		this.location = location;
+		this.reason = reason;
+		this.menuPath = menuPath;
+	}
+
+	/**
+	 * Get the invalid URL.
+	 * 
+	 * @return the value of location.
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Get the path of the menu item the URL was taken from, e.g. {@code Overview > Download}.
+	 * 
+	 * @return the menu path or {@code null} if the URL does not come from a menu.
+	 */
+	public String getMenuPath() {
+		return menuPath;
+	}
+
+	/**
+	 * Get the violated rule.
+	 * 
+	 * @return the value of reason.
+	 */
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * Creates a copy of this exception which tells the menu item the URL was taken from.
+	 * 
+	 * @param path
+	 *            the names of the menu and the menu items leading to the URL
+	 * @return the new exception
+	 */
+	InvalidSitemapUrlException withMenuPath(final String path) {
+		final InvalidSitemapUrlException exception = new InvalidSitemapUrlException(location, reason, path);
+		exception.setStackTrace(getStackTrace());
+		return exception;
+	}
+
+}
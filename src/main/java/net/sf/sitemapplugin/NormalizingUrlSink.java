@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Normalizes the URLs passed through and drops every URL which was seen before.
+ * <p>
+ * Different spellings of the same location are reduced to one, for example {@code http://host/./index.html},
+ * {@code http://host/module/../index.html} and {@code HTTP://Host/index.html#top} all become
+ * {@code http://host/index.html}. The seen URLs are kept in a {@link CompactUrlSet}, which can be shared by several
+ * sinks to de-duplicate URLs across them.
+ * </p>
+ */
+final class NormalizingUrlSink implements UrlSink {
+
+	/**
+	 * Normalizes the given URL: the fragment is removed, the scheme and host are converted to lower case and the
+	 * segments {@code .} and {@code ..} of the path are resolved.
+	 * 
+	 * @param url
+	 *            the URL to normalize
+	 * @return the normalized URL
+	 */
+	static String normalize(final String url) {
+		String result = url;
+		final int fragment = result.indexOf('#');
+		if (fragment >= 0) {
+			result = result.substring(0, fragment);
+		}
+
+		// Most URLs have no dot segments, spare them the parsing
+		if (result.indexOf("/.") >= 0) {
+			try {
+				result = new URI(result).normalize().toString();
+			} catch (final URISyntaxException e) {
+				// not a valid URI, keep the path as it is
+			}
+		}
+
+		final int schemeEnd = result.indexOf("://");
+		if (schemeEnd > 0) {
+			int authorityEnd = result.indexOf('/', schemeEnd + 3);
+			if (authorityEnd < 0) {
+				result += '/';
+				authorityEnd = result.length() - 1;
+			}
+			final String authority = result.substring(0, authorityEnd);
+			final String lowerCase = authority.toLowerCase(Locale.ENGLISH);
+			if (!authority.equals(lowerCase)) {
+				result = lowerCase + result.substring(authorityEnd);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Normalizes the URLs of the translations of a page, so that they match the normalized locations.
+	 * 
+	 * @return the given map if all URLs are normalized already, otherwise a normalized copy
+	 */
+	private static Map<String, String> normalize(final Map<String, String> alternates) {
+		Map<String, String> normalized = alternates;
+		for (final Map.Entry<String, String> alternate : alternates.entrySet()) {
+			final String location = normalize(alternate.getValue());
+			if (!location.equals(alternate.getValue())) {
+				if (normalized == alternates) {
+					normalized = new LinkedHashMap<String, String>(alternates);
+				}
+				normalized.put(alternate.getKey(), location);
+			}
+		}
+		return normalized;
+	}
+
+	private final UrlSink delegate;
+
+	private int duplicateCount;
+
+	private final CompactUrlSet seen;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param seen
+	 *            the normalized URLs seen so far, which is updated by this sink
+	 * @param delegate
+	 *            the sink receiving the normalized URLs which were not seen before
+	 */
+	NormalizingUrlSink(final CompactUrlSet seen, final UrlSink delegate) {
+		this.seen = seen;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		final String location = normalize(url.getLocation());
+		if (!seen.add(location)) {
+			duplicateCount++;
+			return;
+		}
+		final Map<String, String> alternates = normalize(url.getAlternates());
+		if (location.equals(url.getLocation()) && alternates == url.getAlternates()) {
+			delegate.add(url);
+		} else {
+			delegate.add(new SitemapUrl(location, url.getLastModified(), url.getChangeFreq(), url.getPriority(), alternates));
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		delegate.finish();
+	}
+
+	/**
+	 * Get the number of dropped URLs.
+	 * 
+	 * @return the number of URLs which were seen before.
+	 */
+	int getDuplicateCount() {
+		return duplicateCount;
+	}
+
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Writer;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.WriterFactory;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Caches resolved decoration models across builds, one serialized {@code site.xml} per entry.
+ * <p>
+ * An entry is named after the hash of all inputs of the resolution, so a changed input simply leads to a new entry and
+ * entries are never updated. New entries are written to a temporary file and renamed, so several builds can share the
+ * directory at the same time without ever reading an incomplete entry. Entries which were not used for a while are
+ * pruned.
+ * </p>
+ */
+final class PersistentDecorationModelCache {
+
+	/**
+	 * Entries which were not used for 30 days are removed.
+	 */
+	static final long MAX_AGE = 30L * 24 * 60 * 60 * 1000;
+
+	private static final String EXTENSION = ".xml";
+
+	private static final String TEMP_EXTENSION = ".tmp";
+
+	private final File directory;
+
+	private final AtomicInteger hits = new AtomicInteger();
+
+	private final AtomicInteger misses = new AtomicInteger();
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param directory
+	 *            the cache directory, which is created when the first entry is stored
+	 */
+	PersistentDecorationModelCache(final File directory) {
+		if (directory == null) {
+			throw new IllegalArgumentException("Argument 'directory' must not be null.");
+		}
+		this.directory = directory;
+	}
+
+	/**
+	 * Reads a cached decoration model. An entry which can not be read, e.g. because it was written by an incompatible
+	 * version, is removed.
+	 * 
+	 * @param key
+	 *            the hash of the inputs
+	 * @return the decoration model or {@code null} if there is none
+	 */
+	DecorationModel get(final String key) {
+		final File file = new File(directory, key + EXTENSION);
+		if (!file.isFile()) {
+			misses.incrementAndGet();
+			return null;
+		}
+
+		DecorationModel model = null;
+		Reader reader = null;
+		try {
+			reader = ReaderFactory.newXmlReader(file);
+			model = new DecorationXpp3Reader().read(reader);
+		} catch (final IOException e) {
+			// Removed by a concurrent build or unreadable
+		} catch (final XmlPullParserException e) {
+			file.delete();
+		} finally {
+			IOUtil.close(reader);
+		}
+
+		if (model == null) {
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+			// Keeps the entry from being pruned
+			file.setLastModified(System.currentTimeMillis());
+		}
+		return model;
+	}
+
+	/**
+	 * Get the directory of the cache.
+	 * 
+	 * @return the value of directory
+	 */
+	File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Get the number of lookups which found a decoration model.
+	 * 
+	 * @return the number of hits
+	 */
+	int getHits() {
+		return hits.get();
+	}
+
+	/**
+	 * Get the number of lookups which found no decoration model.
+	 * 
+	 * @return the number of misses
+	 */
+	int getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * Removes the entries and left over temporary files which were not used for longer than the given age. Files which
+	 * can not be deleted are skipped.
+	 * 
+	 * @param maxAge
+	 *            the maximum age in milliseconds
+	 * @return the number of removed files
+	 */
+	int prune(final long maxAge) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return 0;
+		}
+
+		final long oldest = System.currentTimeMillis() - maxAge;
+		int removed = 0;
+		for (final File file : files) {
+			final String name = file.getName();
+			if ((name.endsWith(EXTENSION) || name.endsWith(TEMP_EXTENSION)) && file.lastModified() < oldest && file.delete()) {
+				removed++;
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Stores a decoration model. If another build stores the same entry at the same time one of the files wins, which
+	 * does not matter as both have the same content.
+	 * 
+	 * @param key
+	 *            the hash of the inputs
+	 * @param model
+	 *            the resolved decoration model
+	 * @throws IOException
+	 *             if the entry can not be written
+	 */
+	void put(final String key, final DecorationModel model) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+			throw new IOException("Can not create cache directory '" + directory + "'.");
+		}
+
+		final File temp = File.createTempFile(key, TEMP_EXTENSION, directory);
+		try {
+			final Writer writer = WriterFactory.newXmlWriter(temp);
+			try {
+				new DecorationXpp3Writer().write(writer, model);
+				writer.close();
+			} finally {
+				IOUtil.close(writer);
+			}
+			final File file = new File(directory, key + EXTENSION);
+			// Fails on some platforms if the entry was stored concurrently, which leaves the existing entry in place
+			temp.renameTo(file);
+		} finally {
+			temp.delete();
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The pages rendered into an output directory, looked up by their URL.
+ * <p>
+ * Every directory is listed once and its names are kept, so that checking a page is a hash lookup instead of a file
+ * system call. The names are compared case-sensitively, as a web server would. Instances can be shared by several
+ * threads.
+ * </p>
+ */
+final class RenderedPages {
+
+	/**
+	 * The page served for a URL ending with a slash.
+	 */
+	static final String WELCOME_FILE = "index.html";
+
+	/**
+	 * Decodes the percent-encoded characters of a path, a {@code +} is kept.
+	 */
+	private static String decode(final String path) {
+		try {
+			return URLDecoder.decode(path.replace("+", "%2B"), "UTF-8");
+		} catch (final IllegalArgumentException e) {
+			// not a valid encoding, take the path as it is
+			return path;
+		} catch (final UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported by this JVM.", e);
+		}
+	}
+
+	private final String baseUrl;
+
+	private final File directory;
+
+	private final ConcurrentMap<File, Set<String>> listings = new ConcurrentHashMap<File, Set<String>>();
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param baseUrl
+	 *            the URL the output directory is published at, which is normalized like the locations of the URLs
+	 * @param directory
+	 *            the output directory
+	 */
+	RenderedPages(final String baseUrl, final File directory) {
+		final String normalized = NormalizingUrlSink.normalize(baseUrl);
+		this.baseUrl = normalized.endsWith("/") ? normalized : normalized + "/";
+		this.directory = directory;
+	}
+
+	/**
+	 * Checks whether a file exists, by the listing of its directory.
+	 * 
+	 * @param file
+	 *            the file, as returned by {@link #getFile(String)}
+	 * @return whether the file or a directory of that name exists
+	 */
+	boolean exists(final File file) {
+		final File parent = file.getParentFile();
+		Set<String> names = listings.get(parent);
+		if (names == null) {
+			final String[] list = parent.list();
+			names = list == null ? Collections.<String> emptySet() : new HashSet<String>(Arrays.asList(list));
+			// A concurrent listing of the same directory is equal, so either one may win
+			listings.putIfAbsent(parent, names);
+		}
+		return names.contains(file.getName());
+	}
+
+	/**
+	 * Maps a URL to the file of its page. The query and fragment are ignored and a URL ending with a slash is mapped to
+	 * the {@link #WELCOME_FILE} of the directory.
+	 * 
+	 * @param location
+	 *            the normalized URL
+	 * @return the file or {@code null} if the URL is not below the base URL
+	 */
+	File getFile(final String location) {
+		if (!location.startsWith(baseUrl)) {
+			return null;
+		}
+		int end = location.length();
+		for (int i = baseUrl.length(); i < end; i++) {
+			final char c = location.charAt(i);
+			if (c == '?' || c == '#') {
+				end = i;
+			}
+		}
+		String path = location.substring(baseUrl.length(), end);
+		if (path.indexOf('%') >= 0) {
+			path = decode(path);
+		}
+		if (path.length() == 0 || path.endsWith("/")) {
+			path += WELCOME_FILE;
+		}
+		return new File(directory, path.replace('/', File.separatorChar));
+	}
+
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * A sitemap file or sitemap index rendered into memory by a {@link SitemapRenderer}. It is immutable, so it can be
+ * served by many threads at once while the renderer prepares the next version.
+ */
+public final class RenderedSitemap {
+
+	private final byte[] content;
+
+	private final String eTag;
+
+	private final long lastModified;
+
+	private final String name;
+
+	private final List<SitemapUrl> urls;
+
+	/**
+	 * Constructor hashes the content.
+	 * 
+	 * @param name
+	 *            the file name, e.g. {@code sitemap1.xml}
+	 * @param content
+	 *            the serialized sitemap, not copied
+	 * @param lastModified
+	 *            the time the content was rendered at
+	 * @param urls
+	 *            the URLs the content was rendered from, empty for an index
+	 */
+	RenderedSitemap(final String name, final byte[] content, final long lastModified, final List<SitemapUrl> urls) {
+		this(name, content, '"' + SitemapFingerprint.hex(FileReplacer.createDigest().digest(content)) + '"', lastModified, urls);
+	}
+
+	private RenderedSitemap(final String name, final byte[] content, final String eTag, final long lastModified,
+			final List<SitemapUrl> urls) {
+		this.name = name;
+		this.content = content;
+		this.eTag = eTag;
+		this.lastModified = lastModified;
+		this.urls = urls;
+	}
+
+	/**
+	 * Get the entity tag of the content, a quoted hash which changes whenever the content changes.
+	 * 
+	 * @return the value of eTag, e.g. for the {@code ETag} and {@code If-None-Match} HTTP headers.
+	 */
+	public String getETag() {
+		return eTag;
+	}
+
+	/**
+	 * Get the time the content was rendered at, it is kept as long as the content does not change.
+	 * 
+	 * @return the time in milliseconds.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Get the length of the content.
+	 * 
+	 * @return the number of bytes.
+	 */
+	public int getLength() {
+		return content.length;
+	}
+
+	/**
+	 * Get the file name the sitemap is published under.
+	 * 
+	 * @return the value of name, e.g. {@code sitemap.xml}.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Get the URLs the content was rendered from.
+	 * 
+	 * @return the URLs, empty for a sitemap index.
+	 */
+	List<SitemapUrl> getUrls() {
+		return urls;
+	}
+
+	/**
+	 * Creates a copy published under another name, sharing the content.
+	 * 
+	 * @param newName
+	 *            the new file name
+	 * @return this instance if the name is the same, otherwise the copy
+	 */
+	RenderedSitemap withName(final String newName) {
+		return newName.equals(name) ? this : new RenderedSitemap(newName, content, eTag, lastModified, urls);
+	}
+
+	/**
+	 * Writes the content to a stream, which costs a single buffer copy.
+	 * 
+	 * @param out
+	 *            the stream to write to, e.g. the output stream of an HTTP response
+	 * @throws IOException
+	 *             if the content can not be written
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		out.write(content, 0, content.length);
+	}
+
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Finds the rendered pages of a site by walking its output directory.
+ * <p>
+ * The directory tree is walked level by level, the directories of a level are listed in parallel. Directories matching
+ * an exclude pattern which ends with {@code /**} are not entered at all, which keeps the walk fast even if large
+ * subtrees like aggregated Javadoc are excluded.
+ * </p>
+ */
+final class SiteCrawler {
+
+	/**
+	 * Result of listing a single directory.
+	 */
+	private static final class Listing {
+
+		private final List<String> directories = new ArrayList<String>();
+
+		private final Map<String, Long> pages = new HashMap<String, Long>();
+
+	}
+
+	private static String[] toNativePatterns(final List<String> patterns) {
+		final String[] result = new String[patterns.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = patterns.get(i).replace('/', File.separatorChar);
+		}
+		return result;
+	}
+
+	private final String[] excludes;
+
+	private final String[] includes;
+
+	private final File root;
+
+	private final int threads;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param root
+	 *            the output directory of the site
+	 * @param includes
+	 *            the Ant-style patterns of the pages to include, relative to the root
+	 * @param excludes
+	 *            the Ant-style patterns of the pages to exclude, relative to the root
+	 * @param threads
+	 *            the number of threads listing directories
+	 */
+	SiteCrawler(final File root, final List<String> includes, final List<String> excludes, final int threads) {
+		this.root = root;
+		this.includes = toNativePatterns(includes);
+		this.excludes = toNativePatterns(excludes);
+		this.threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Walks the output directory.
+	 * 
+	 * @return the paths of all matching pages relative to the root, using {@code /} as separator, mapped to their
+	 *         modification times and sorted by path
+	 * @throws IOException
+	 *             if a directory can not be listed
+	 */
+	SortedMap<String, Long> crawl() throws IOException {
+		final SortedMap<String, Long> pages = new TreeMap<String, Long>();
+		if (!root.isDirectory()) {
+			return pages;
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<String> level = Collections.singletonList("");
+			while (!level.isEmpty()) {
+				final List<Callable<Listing>> tasks = new ArrayList<Callable<Listing>>(level.size());
+				for (final String directory : level) {
+					tasks.add(new Callable<Listing>() {
+						@Override
+						public Listing call() throws IOException {
+							return list(directory);
+						}
+					});
+				}
+
+				final List<String> next = new ArrayList<String>();
+				for (final Future<Listing> future : executor.invokeAll(tasks)) {
+					final Listing listing = future.get();
+					next.addAll(listing.directories);
+					pages.putAll(listing.pages);
+				}
+				level = next;
+			}
+			return pages;
+		} catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause().getMessage(), e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while crawling '" + root + "'.");
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private boolean isExcludedDirectory(final String path) {
+		final String nativePath = path.replace('/', File.separatorChar);
+		for (final String exclude : excludes) {
+			if (exclude.endsWith(File.separator + "**") && SelectorUtils.matchPath(exclude, nativePath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isIncludedPage(final String path) {
+		final String nativePath = path.replace('/', File.separatorChar);
+		for (final String exclude : excludes) {
+			if (SelectorUtils.matchPath(exclude, nativePath)) {
+				return false;
+			}
+		}
+		for (final String include : includes) {
+			if (SelectorUtils.matchPath(include, nativePath)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Listing list(final String directory) throws IOException {
+		final File dir = directory.length() == 0 ? root : new File(root, directory);
+		final File[] children = dir.listFiles();
+		if (children == null) {
+			throw new IOException("Can not list directory '" + dir + "'.");
+		}
+
+		final Listing listing = new Listing();
+		for (final File child : children) {
+			final String path = directory + child.getName();
+			if (child.isDirectory()) {
+				if (!isExcludedDirectory(path)) {
+					listing.directories.add(path + '/');
+				}
+			} else if (isIncludedPage(path)) {
+				listing.pages.put(path, Long.valueOf(child.lastModified()));
+			}
+		}
+		return listing;
+	}
+
+}
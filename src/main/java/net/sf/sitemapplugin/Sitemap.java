@@ -15,10 +15,16 @@
  ******************************************************************************/
 package net.sf.sitemapplugin;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.util.Date;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import org.apache.maven.doxia.site.decoration.DecorationModel;
 import org.apache.maven.doxia.site.decoration.Menu;
@@ -28,36 +34,112 @@ import org.codehaus.plexus.i18n.I18N;
 
 import com.redfin.sitemapgenerator.ChangeFreq;
 import com.redfin.sitemapgenerator.WebSitemapGenerator;
-import com.redfin.sitemapgenerator.WebSitemapUrl.Options;
 
 /**
  * Generate a sitemap.
  */
 public class Sitemap {
 
-	private static void extractItems(final MavenProject project, final List<MenuItem> items, final WebSitemapGenerator generator,
-			final ChangeFreq changeFreq) throws MalformedURLException {
-		if (items == null || items.isEmpty()) {
-			return;
+	/**
+	 * File name of a sitemap which fits into a single file.
+	 */
+	static final String FILE_NAME = "sitemap.xml";
+
+	/**
+	 * File name of the sitemap index.
+	 */
+	static final String INDEX_FILE_NAME = "sitemap_index.xml";
+
+	private static void appendName(final StringBuilder path, final MenuItem item) {
+		if (path.length() > 0) {
+			path.append(" > ");
+		}
+		path.append(item.getName() == null ? item.getHref() : item.getName());
+	}
+
+	/**
+	 * Gets the URL of the project, which all relative links are resolved against.
+	 */
+	private static String baseUrl(final MavenProject project) {
+		return baseUrl(project.getUrl());
+	}
+
+	private static String baseUrl(final String url) {
+		return url.endsWith("/") ? url : url + "/";
+	}
+
+	/**
+	 * Gets the hreflang code of a locale, e.g. {@code de} or {@code en-GB}.
+	 */
+	private static String hreflang(final Locale locale) {
+		return locale.getCountry().length() == 0 ? locale.getLanguage() : locale.getLanguage() + '-' + locale.getCountry();
+	}
+
+	/**
+	 * Moves the URL of a page of the default site into the site of the given locale.
+	 */
+	private static String localize(final String location, final String baseUrl, final Locale locale, final Locale defaultLocale) {
+		if (locale.equals(defaultLocale) || !location.startsWith(baseUrl)) {
+			return location;
 		}
+		return baseUrl + locale.getLanguage() + '/' + location.substring(baseUrl.length());
+	}
 
-		for (final MenuItem item : items) {
-			final Options options = new Options(project.getUrl() + relativePath(item.getHref()));
-			options.lastMod(new Date());
-			options.changeFreq(changeFreq);
-			generator.addUrl(options.build());
-			extractItems(project, item.getItems(), generator, changeFreq);
+	/**
+	 * Builds the path of a menu item for messages, e.g. {@code Overview > Download}.
+	 */
+	private static String menuPath(final Menu menu, final Deque<MenuItem> parents, final MenuItem item) {
+		final StringBuilder path = new StringBuilder(menu.getName() == null ? "" : menu.getName());
+		for (final Iterator<MenuItem> i = parents.descendingIterator(); i.hasNext();) {
+			appendName(path, i.next());
 		}
+		appendName(path, item);
+		return path.toString();
 	}
 
-	private static String relativePath(final String href) {
-		return href.startsWith("/") ? "." + href : href;
+	private static boolean push(final Deque<Iterator<MenuItem>> stack, final List<MenuItem> items) {
+		if (items != null && !items.isEmpty()) {
+			stack.push(items.iterator());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Resolves a link against the base URL held by the buffer. Absolute links are returned as they are, a leading
+	 * {@code /} or {@code ./} is skipped, because links are relative to the site root.
+	 * 
+	 * @param url
+	 *            the buffer starting with the base URL
+	 * @param baseLength
+	 *            the length of the base URL
+	 * @param href
+	 *            the link to resolve
+	 * @return the absolute URL
+	 */
+	private static String toUrl(final StringBuilder url, final int baseLength, final String href) {
+		if (href.indexOf("://") >= 0) {
+			return href;
+		}
+
+		int start = 0;
+		if (href.startsWith("./")) {
+			start = 2;
+		} else if (href.startsWith("/")) {
+			start = 1;
+		}
+		url.setLength(baseLength);
+		return url.append(href, start, href.length()).toString();
 	}
 
 	private String encoding;
 
 	private I18N i18n;
 
+	private SourceTimestampIndex timestampIndex;
+
+	private String language;
+
 	/**
 	 * Constructor sets default values.
 	 * 
@@ -71,11 +153,90 @@ public class Sitemap {
 		this.i18n = i18n;
 	}
 
-	private void extract(final MavenProject project, final DecorationModel decoration, final WebSitemapGenerator generator,
-			final ChangeFreq changeFreq) throws MalformedURLException {
+	/**
+	 * Walks the menu trees depth-first with an explicit stack, so that deeply nested menus can not exhaust the call
+	 * stack. The URLs are built in a single reusable buffer which already holds the base URL.
+	 */
+	private void extract(final String baseUrl, final DecorationModel decoration, final UrlSink sink, final ChangeFreq changeFreq)
+			throws IOException {
+		final StringBuilder url = new StringBuilder(baseUrl.length() + 64).append(baseUrl);
+		final long buildTime = System.currentTimeMillis();
+		final Deque<Iterator<MenuItem>> stack = new ArrayDeque<Iterator<MenuItem>>();
+		// The items whose children are on the stack, to report where an invalid URL comes from
+		final Deque<MenuItem> parents = new ArrayDeque<MenuItem>();
 		for (final Menu menu : decoration.getMenus()) {
-			extractItems(project, menu.getItems(), generator, changeFreq);
+			push(stack, menu.getItems());
+			while (!stack.isEmpty()) {
+				final Iterator<MenuItem> items = stack.peek();
+				if (!items.hasNext()) {
+					stack.pop();
+					if (!stack.isEmpty()) {
+						parents.pop();
+					}
+					continue;
+				}
+
+				final MenuItem item = items.next();
+				final String href = item.getHref();
+				try {
+					sink.add(new SitemapUrl(toUrl(url, baseUrl.length(), href), getLastModified(href, buildTime), changeFreq));
+				} catch (final InvalidSitemapUrlException e) {
+					throw e.withMenuPath(menuPath(menu, parents, item));
+				}
+				if (push(stack, item.getItems())) {
+					parents.push(item);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Generates a sitemap.xml within the given {@code UrlSink}. The sink is not finished, so that further URLs can be
+	 * added to it afterwards.
+	 * 
+	 * @param model
+	 *            the DecorationModel to extract the menus from
+	 * @param sink
+	 *            the sink receiving the URLs, e.g. a {@link StreamingSitemapWriter}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public void generate(final MavenProject project, final DecorationModel model, final UrlSink sink, final ChangeFreq changeFreq)
+			throws IOException {
+		generate(baseUrl(project), model, sink, changeFreq);
+	}
+
+	/**
+	 * Generates a sitemap from the menus of a site published at the given URL, without a Maven project, e.g. to serve
+	 * the sitemap of a running application. The sink is not finished.
+	 * 
+	 * @param baseUrl
+	 *            the URL of the site, which relative links are resolved against
+	 * @param model
+	 *            the DecorationModel to extract the menus from
+	 * @param sink
+	 *            the sink receiving the URLs, e.g. a {@link SitemapRenderer}, which serves them from memory
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public void generate(final String baseUrl, final DecorationModel model, final UrlSink sink, final ChangeFreq changeFreq)
+			throws IOException {
+		if (baseUrl == null) {
+			throw new IllegalArgumentException("Argument 'baseUrl' must not be null.");
 		}
+		if (model == null) {
+			throw new IllegalArgumentException("Argument 'model' must not be null.");
+		}
+		if (sink == null) {
+			throw new IllegalArgumentException("Argument 'sink' must not be null.");
+		}
+		if (changeFreq == null) {
+			throw new IllegalArgumentException("Argument 'changeFreq' must not be null.");
+		}
+
+		extract(baseUrl(baseUrl), model, sink, changeFreq);
 	}
 
 	/**
@@ -92,17 +253,200 @@ public class Sitemap {
 	 */
 	public void generate(final MavenProject project, final DecorationModel model, final WebSitemapGenerator generator,
 			final ChangeFreq changeFreq) throws IOException {
-		if (model == null) {
-			throw new IllegalArgumentException("Argument 'model' must not be null.");
-		}
 		if (generator == null) {
 			throw new IllegalArgumentException("Argument 'generator' must not be null.");
 		}
+
+		generate(project, model, new GeneratorUrlSink(generator), changeFreq);
+	}
+
+	/**
+	 * Generates a single sitemap for the sites of several locales. The pages of the locales are matched by their links
+	 * and every page is listed once per locale which links it, together with the URLs of all its translations as
+	 * hreflang alternates. The site of a locale other than the default locale is located in a subdirectory named after
+	 * its language.
+	 * 
+	 * @param models
+	 *            the DecorationModels to extract the menus from by locale, the default locale first
+	 * @param sink
+	 *            the sink receiving the URLs
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null} or no DecorationModel is given
+	 */
+	public void generateAlternates(final MavenProject project, final Map<Locale, DecorationModel> models, final UrlSink sink,
+			final ChangeFreq changeFreq) throws IOException {
+		if (models == null || models.isEmpty()) {
+			throw new IllegalArgumentException("Argument 'models' must not be null or empty.");
+		}
+		if (sink == null) {
+			throw new IllegalArgumentException("Argument 'sink' must not be null.");
+		}
+		if (changeFreq == null) {
+			throw new IllegalArgumentException("Argument 'changeFreq' must not be null.");
+		}
+
+		final Locale defaultLocale = models.keySet().iterator().next();
+		// The pages of all locales by their URL within the site of the default locale, in the order of appearance
+		final Map<String, Map<Locale, SitemapUrl>> pages = new LinkedHashMap<String, Map<Locale, SitemapUrl>>();
+		final String previousLanguage = language;
+		try {
+			for (final Map.Entry<Locale, DecorationModel> model : models.entrySet()) {
+				final Locale locale = model.getKey();
+				language = locale.equals(defaultLocale) ? null : locale.getLanguage();
+				extract(baseUrl(project), model.getValue(), new UrlSink() {
+					@Override
+					public void add(final SitemapUrl url) {
+						Map<Locale, SitemapUrl> translations = pages.get(url.getLocation());
+						if (translations == null) {
+							translations = new LinkedHashMap<Locale, SitemapUrl>();
+							pages.put(url.getLocation(), translations);
+						}
+						if (!translations.containsKey(locale)) {
+							translations.put(locale, url);
+						}
+					}
+
+					@Override
+					public void finish() {
+					}
+				}, changeFreq);
+			}
+		} finally {
+			language = previousLanguage;
+		}
+
+		final String baseUrl = baseUrl(project);
+		for (final Map.Entry<String, Map<Locale, SitemapUrl>> page : pages.entrySet()) {
+			final Map<Locale, SitemapUrl> translations = page.getValue();
+			if (!page.getKey().startsWith(baseUrl) || translations.size() == 1) {
+				// External links and pages without translations have no alternates
+				for (final Map.Entry<Locale, SitemapUrl> translation : translations.entrySet()) {
+					final SitemapUrl url = translation.getValue();
+					sink.add(new SitemapUrl(localize(page.getKey(), baseUrl, translation.getKey(), defaultLocale), url.getLastModified(),
+							changeFreq));
+				}
+				continue;
+			}
+
+			final Map<String, String> alternates = new LinkedHashMap<String, String>();
+			for (final Locale locale : translations.keySet()) {
+				alternates.put(hreflang(locale), localize(page.getKey(), baseUrl, locale, defaultLocale));
+			}
+			if (translations.containsKey(defaultLocale)) {
+				alternates.put("x-default", page.getKey());
+			}
+			for (final Map.Entry<Locale, SitemapUrl> translation : translations.entrySet()) {
+				sink.add(new SitemapUrl(alternates.get(hreflang(translation.getKey())), translation.getValue().getLastModified(),
+						changeFreq, alternates));
+			}
+		}
+	}
+
+	/**
+	 * Generates the URLs of pages which were found in the output directory of the site, e.g. reports and Javadoc
+	 * which are not linked from the menus. The last modification date is taken from the source document of a page if
+	 * there is one, otherwise from the rendered file.
+	 * 
+	 * @param pages
+	 *            the paths of the pages relative to the site root, mapped to the modification times of the rendered
+	 *            files
+	 * @param sink
+	 *            the sink receiving the URLs
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public void generatePages(final MavenProject project, final Map<String, Long> pages, final UrlSink sink,
+			final ChangeFreq changeFreq) throws IOException {
+		if (pages == null) {
+			throw new IllegalArgumentException("Argument 'pages' must not be null.");
+		}
+		if (sink == null) {
+			throw new IllegalArgumentException("Argument 'sink' must not be null.");
+		}
+		if (changeFreq == null) {
+			throw new IllegalArgumentException("Argument 'changeFreq' must not be null.");
+		}
+
+		final String baseUrl = baseUrl(project);
+		for (final Map.Entry<String, Long> page : pages.entrySet()) {
+			sink.add(new SitemapUrl(baseUrl + page.getKey(), getLastModified(page.getKey(), page.getValue().longValue()), changeFreq));
+		}
+	}
+
+	/**
+	 * Generates the URLs listed in a file, e.g. exported from an application. The file is streamed, so it may list
+	 * millions of URLs.
+	 * <p>
+	 * Every line holds a URL, which is resolved against the URL of the project unless it is absolute, optionally
+	 * followed by comma-separated columns: the last modification date as W3C datetime, the change frequency and the
+	 * priority. Empty columns are left out, except the change frequency which defaults to the given one. A first line
+	 * starting with the column name {@code loc} or {@code url} is skipped as header.
+	 * </p>
+	 * 
+	 * @param list
+	 *            the UTF-8 encoded file listing the URLs
+	 * @param sink
+	 *            the sink receiving the URLs
+	 * @throws IOException
+	 *             if the file can not be read or a line is invalid
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public void generateUrls(final MavenProject project, final File list, final UrlSink sink, final ChangeFreq changeFreq)
+			throws IOException {
+		if (list == null) {
+			throw new IllegalArgumentException("Argument 'list' must not be null.");
+		}
+		if (sink == null) {
+			throw new IllegalArgumentException("Argument 'sink' must not be null.");
+		}
 		if (changeFreq == null) {
 			throw new IllegalArgumentException("Argument 'changeFreq' must not be null.");
 		}
 
-		extract(project, model, generator, changeFreq);
+		final String baseUrl = baseUrl(project);
+		final StringBuilder url = new StringBuilder(baseUrl.length() + 64).append(baseUrl);
+		final UrlListReader reader = new UrlListReader(list);
+		try {
+			while (reader.next()) {
+				final String location = reader.getField(0);
+				if (reader.getLineNumber() == 1 && ("loc".equalsIgnoreCase(location) || "url".equalsIgnoreCase(location))) {
+					continue;
+				}
+				if (location == null) {
+					throw reader.createException("URL is missing");
+				}
+				final String lastModified = reader.getField(1);
+				final String frequency = reader.getField(2);
+				ChangeFreq urlChangeFreq = changeFreq;
+				if (frequency != null) {
+					try {
+						urlChangeFreq = ChangeFreq.valueOf(frequency.toUpperCase(Locale.ENGLISH));
+					} catch (final IllegalArgumentException e) {
+						throw reader.createException("'" + frequency + "' is not a change frequency");
+					}
+				}
+				final String priority = reader.getField(3);
+				Double urlPriority = null;
+				if (priority != null) {
+					try {
+						urlPriority = Double.valueOf(priority);
+					} catch (final NumberFormatException e) {
+						throw reader.createException("'" + priority + "' is not a priority");
+					}
+					if (!(urlPriority.doubleValue() >= 0.0 && urlPriority.doubleValue() <= 1.0)) {
+						throw reader.createException("priority " + priority + " is not between 0.0 and 1.0");
+					}
+				}
+				sink.add(new SitemapUrl(toUrl(url, baseUrl.length(), location), lastModified == null ? 0L : reader
+						.parseDate(lastModified), urlChangeFreq, urlPriority, Collections.<String, String> emptyMap()));
+			}
+		} finally {
+			reader.close();
+		}
 	}
 
 	/**
@@ -123,6 +467,24 @@ public class Sitemap {
 		return i18n;
 	}
 
+	/**
+	 * Get the language of a locale specific site.
+	 * 
+	 * @return the language or {@code null} for the site of the default locale.
+	 */
+	public String getLanguage() {
+		return language;
+	}
+
+	/**
+	 * Gets the last modification date of a page. Pages without a known source document are considered to be
+	 * modified at build time, like reports generated during the build.
+	 */
+	private long getLastModified(final String href, final long buildTime) {
+		final long lastModified = timestampIndex == null ? 0L : timestampIndex.getLastModified(language, href);
+		return lastModified == 0L ? buildTime : lastModified;
+	}
+
 	/**
 	 * Set the encoding to use when writing the output file.
 	 * 
@@ -143,4 +505,26 @@ public class Sitemap {
 		this.i18n = i18n;
 	}
 
+	/**
+	 * Set the language of a locale specific site, whose source documents are located in a subdirectory named after
+	 * the language.
+	 * 
+	 * @param language
+	 *            new value of language, {@code null} for the site of the default locale.
+	 */
+	public void setLanguage(final String language) {
+		this.language = language;
+	}
+
+	/**
+	 * Set the index of the modification times of the source documents, which are used as last modification dates of
+	 * the pages.
+	 * 
+	 * @param timestampIndex
+	 *            new value of timestampIndex, {@code null} to use the build time for all pages.
+	 */
+	void setTimestampIndex(final SourceTimestampIndex timestampIndex) {
+		this.timestampIndex = timestampIndex;
+	}
+
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+import com.redfin.sitemapgenerator.W3CDateFormat;
+import com.redfin.sitemapgenerator.W3CDateFormat.Pattern;
+
+/**
+ * Encodes the {@code <url>} elements of a sitemap to UTF-8, reusing its buffers from one URL to the next.
+ */
+final class SitemapEntryEncoder {
+
+	private static final String[] CHANGE_FREQS = new String[ChangeFreq.values().length];
+
+	/**
+	 * Number of formatted last modification dates which are cached, must be a power of two.
+	 */
+	private static final int DATE_CACHE_SIZE = 256;
+
+	static {
+		for (final ChangeFreq changeFreq : ChangeFreq.values()) {
+			CHANGE_FREQS[changeFreq.ordinal()] = changeFreq.name().toLowerCase(Locale.ENGLISH);
+		}
+	}
+
+	private W3CDateFormat dateFormat = new W3CDateFormat(Pattern.DAY);
+
+	private final StringBuilder entry = new StringBuilder(256);
+
+	private byte[] buffer = new byte[1024];
+
+	private final Date date = new Date();
+
+	private final String[] formattedDates = new String[DATE_CACHE_SIZE];
+
+	private final long[] formattedTimes = new long[DATE_CACHE_SIZE];
+
+	/**
+	 * Encodes a URL into the buffer.
+	 * 
+	 * @param url
+	 *            the URL to encode
+	 * @return the number of bytes at the start of {@link #getBuffer()} which hold the entry
+	 */
+	int encode(final SitemapUrl url) {
+		entry.setLength(0);
+		entry.append("  <url>\n    <loc>");
+		StreamingSitemapWriter.appendEscaped(entry, url.getLocation());
+		entry.append("</loc>\n");
+		if (url.getLastModified() != 0L) {
+			entry.append("    <lastmod>").append(formatDate(url.getLastModified())).append("</lastmod>\n");
+		}
+		if (url.getChangeFreq() != null) {
+			entry.append("    <changefreq>").append(CHANGE_FREQS[url.getChangeFreq().ordinal()]).append("</changefreq>\n");
+		}
+		if (url.getPriority() != null) {
+			entry.append("    <priority>").append(BigDecimal.valueOf(url.getPriority().doubleValue()).toPlainString())
+					.append("</priority>\n");
+		}
+		if (!url.getAlternates().isEmpty()) {
+			for (final Map.Entry<String, String> alternate : url.getAlternates().entrySet()) {
+				entry.append("    <xhtml:link rel=\"alternate\" hreflang=\"").append(alternate.getKey()).append("\" href=\"");
+				StreamingSitemapWriter.appendEscaped(entry, alternate.getValue());
+				entry.append("\"/>\n");
+			}
+		}
+		entry.append("  </url>\n");
+		if (buffer.length < Utf8.maxLength(entry.length())) {
+			buffer = new byte[Utf8.maxLength(entry.length())];
+		}
+		return Utf8.encode(entry, buffer);
+	}
+
+	/**
+	 * Formats a last modification date. Many URLs share the same date, e.g. the build time, so the formatted dates
+	 * are kept in a small direct-mapped cache.
+	 */
+	private String formatDate(final long time) {
+		final int index = (int) (time ^ time >>> 32) & (DATE_CACHE_SIZE - 1);
+		if (formattedDates[index] == null || formattedTimes[index] != time) {
+			date.setTime(time);
+			formattedDates[index] = dateFormat.format(date);
+			formattedTimes[index] = time;
+		}
+		return formattedDates[index];
+	}
+
+	/**
+	 * Get the buffer holding the last encoded entry.
+	 * 
+	 * @return the value of buffer, only valid until the next URL is encoded.
+	 */
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Get the date format used for the last modification dates.
+	 * 
+	 * @return the value of dateFormat.
+	 */
+	W3CDateFormat getDateFormat() {
+		return dateFormat;
+	}
+
+	/**
+	 * Set the date format used for the last modification dates.
+	 * 
+	 * @param dateFormat
+	 *            new value of dateFormat.
+	 */
+	void setDateFormat(final W3CDateFormat dateFormat) {
+		this.dateFormat = dateFormat;
+		Arrays.fill(formattedDates, null);
+	}
+
+}
@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Fingerprint of the inputs of a sitemap.
+ * <p>
+ * Every input is stored as a separate SHA-1 hash, so that a changed fingerprint can tell which of the inputs changed.
+ * </p>
+ */
+final class SitemapFingerprint {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this JVM.", e);
+		}
+	}
+
+	/**
+	 * Formats bytes as lower case hexadecimal digits.
+	 * 
+	 * @param bytes
+	 *            the bytes to format, e.g. a hash
+	 * @return two digits per byte
+	 */
+	static String hex(final byte[] bytes) {
+		final char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Loads a fingerprint stored by a previous build.
+	 * 
+	 * @param file
+	 *            the fingerprint file
+	 * @return the fingerprint or {@code null} if the file does not exist
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	static SitemapFingerprint load(final File file) throws IOException {
+		if (!file.isFile()) {
+			return null;
+		}
+
+		final SitemapFingerprint fingerprint = new SitemapFingerprint();
+		final InputStream in = new FileInputStream(file);
+		try {
+			fingerprint.hashes.load(in);
+		} finally {
+			IOUtil.close(in);
+		}
+		return fingerprint;
+	}
+
+	private static void update(final MessageDigest digest, final List<MenuItem> items, final int depth) {
+		if (items == null) {
+			return;
+		}
+
+		for (final MenuItem item : items) {
+			update(digest, "item" + depth);
+			update(digest, item.getName());
+			update(digest, item.getHref());
+			update(digest, item.getItems(), depth + 1);
+		}
+	}
+
+	private static void update(final MessageDigest digest, final String value) {
+		if (value != null) {
+			digest.update(value.getBytes(UTF_8));
+		}
+		// Separator, so that "ab" + "c" differs from "a" + "bc"
+		digest.update((byte) 0);
+	}
+
+	private final List<String> inputs = new ArrayList<String>();
+
+	private final Properties hashes = new Properties();
+
+	/**
+	 * Gets the names of all inputs whose hash differs from the previous fingerprint, in the order they were added,
+	 * followed by the inputs of the previous fingerprint which are gone, in alphabetical order.
+	 * 
+	 * @param previous
+	 *            the fingerprint of the previous build
+	 * @return the names of the changed, added and removed inputs, empty if the fingerprints are equal
+	 */
+	List<String> getChangedInputs(final SitemapFingerprint previous) {
+		final List<String> changed = new ArrayList<String>();
+		for (final String input : inputs) {
+			if (!hashes.getProperty(input).equals(previous.hashes.getProperty(input))) {
+				changed.add(input);
+			}
+		}
+		for (final String input : new TreeSet<String>(previous.hashes.stringPropertyNames())) {
+			if (!hashes.containsKey(input)) {
+				changed.add(input);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Gets a single hash of all inputs, e.g. to use the fingerprint as a cache key.
+	 * 
+	 * @return the hash in hexadecimal notation
+	 */
+	String getHash() {
+		final MessageDigest digest = createDigest();
+		for (final String input : inputs) {
+			update(digest, input);
+			update(digest, hashes.getProperty(input));
+		}
+		return hex(digest.digest());
+	}
+
+	private void put(final String input, final MessageDigest digest) {
+		inputs.add(input);
+		hashes.setProperty(input, hex(digest.digest()));
+	}
+
+	/**
+	 * Adds the content of a file.
+	 * 
+	 * @param input
+	 *            the name of the input
+	 * @param file
+	 *            the file, which may not exist
+	 * @throws IOException
+	 *             if the file can not be read
+	 */
+	void putFile(final String input, final File file) throws IOException {
+		final MessageDigest digest = createDigest();
+		if (file != null && file.isFile()) {
+			final InputStream in = new FileInputStream(file);
+			try {
+				final byte[] buffer = new byte[8192];
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				IOUtil.close(in);
+			}
+		}
+		put(input, digest);
+	}
+
+	/**
+	 * Adds the names and links of a menu tree.
+	 * 
+	 * @param input
+	 *            the name of the input
+	 * @param menus
+	 *            the menus, may be {@code null}
+	 */
+	void putMenus(final String input, final List<Menu> menus) {
+		final MessageDigest digest = createDigest();
+		if (menus != null) {
+			for (final Menu menu : menus) {
+				update(digest, "menu");
+				update(digest, menu.getName());
+				update(digest, menu.getRef());
+				update(digest, menu.getItems(), 0);
+			}
+		}
+		put(input, digest);
+	}
+
+	/**
+	 * Adds the paths of pages.
+	 * 
+	 * @param input
+	 *            the name of the input
+	 * @param paths
+	 *            the paths, which are sorted unless they are sorted already
+	 */
+	void putPaths(final String input, final Collection<String> paths) {
+		final MessageDigest digest = createDigest();
+		for (final String path : paths instanceof SortedSet<?> ? paths : new TreeSet<String>(paths)) {
+			update(digest, path);
+		}
+		put(input, digest);
+	}
+
+	/**
+	 * Adds the paths of pages with their modification times.
+	 * 
+	 * @param input
+	 *            the name of the input
+	 * @param timestamps
+	 *            the modification times in milliseconds by path
+	 */
+	void putTimestamps(final String input, final Map<String, Long> timestamps) {
+		final MessageDigest digest = createDigest();
+		for (final Map.Entry<String, Long> timestamp : new TreeMap<String, Long>(timestamps).entrySet()) {
+			update(digest, timestamp.getKey());
+			update(digest, timestamp.getValue().toString());
+		}
+		put(input, digest);
+	}
+
+	/**
+	 * Adds a single value.
+	 * 
+	 * @param input
+	 *            the name of the input
+	 * @param value
+	 *            the value, may be {@code null}
+	 */
+	void putValue(final String input, final String value) {
+		final MessageDigest digest = createDigest();
+		update(digest, value);
+		put(input, digest);
+	}
+
+	/**
+	 * Stores this fingerprint, creating the parent directory if necessary.
+	 * 
+	 * @param file
+	 *            the fingerprint file
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	void store(final File file) throws IOException {
+		file.getParentFile().mkdirs();
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			hashes.store(out, "Inputs of the sitemap, a changed value triggers its regeneration");
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+}
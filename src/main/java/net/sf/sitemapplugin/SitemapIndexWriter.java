@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redfin.sitemapgenerator.W3CDateFormat;
+
+/**
+ * Writes a sitemap index, one referenced sitemap after another.
+ */
+final class SitemapIndexWriter {
+
+	private static final byte[] FOOTER = "</sitemapindex>".getBytes(StreamingSitemapWriter.UTF_8);
+
+	private static final byte[] HEADER = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<sitemapindex xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\">\n").getBytes(StreamingSitemapWriter.UTF_8);
+
+	private final W3CDateFormat dateFormat;
+
+	private final StringBuilder entry = new StringBuilder(128);
+
+	private final OutputStream out;
+
+	/**
+	 * Creates the index file and writes its header.
+	 * 
+	 * @param file
+	 *            the index file
+	 * @param dateFormat
+	 *            the date format used for the last modification dates
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	SitemapIndexWriter(final File file, final W3CDateFormat dateFormat) throws IOException {
+		this(new BufferedOutputStream(new FileOutputStream(file)), dateFormat);
+	}
+
+	/**
+	 * Writes the header of the index to a stream.
+	 * 
+	 * @param out
+	 *            the stream to write to, closed by {@link #close()}
+	 * @param dateFormat
+	 *            the date format used for the last modification dates
+	 * @throws IOException
+	 *             if the header can not be written
+	 */
+	SitemapIndexWriter(final OutputStream out, final W3CDateFormat dateFormat) throws IOException {
+		this.dateFormat = dateFormat;
+		this.out = out;
+		try {
+			out.write(HEADER);
+		} catch (final IOException e) {
+			IOUtil.close(out);
+			throw e;
+		}
+	}
+
+	/**
+	 * Adds a sitemap to the index.
+	 * 
+	 * @param location
+	 *            the absolute URL of the sitemap
+	 * @param lastModified
+	 *            the last modification time of the sitemap in milliseconds
+	 * @throws IOException
+	 *             if the entry can not be written
+	 */
+	void add(final String location, final long lastModified) throws IOException {
+		entry.setLength(0);
+		entry.append("  <sitemap>\n    <loc>");
+		StreamingSitemapWriter.appendEscaped(entry, location);
+		entry.append("</loc>\n    <lastmod>").append(dateFormat.format(new Date(lastModified))).append("</lastmod>\n  </sitemap>\n");
+		out.write(entry.toString().getBytes(StreamingSitemapWriter.UTF_8));
+	}
+
+	/**
+	 * Writes the footer and closes the index file.
+	 * 
+	 * @throws IOException
+	 *             if the footer can not be written
+	 */
+	void close() throws IOException {
+		try {
+			out.write(FOOTER);
+			out.close();
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+}
@@ -0,0 +1,183 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.codehaus.plexus.util.IOUtil;
+
+/**
+ * Wall-clock timings of the phases of a sitemap build and counters of its output.
+ * <p>
+ * The metrics may be updated by several threads at the same time. If locales are generated concurrently the timings of
+ * a phase are summed over all locales and may therefore exceed the total time.
+ * </p>
+ */
+final class SitemapMetrics {
+
+	/**
+	 * The timed phases of a sitemap build.
+	 */
+	enum Phase {
+		LOCALES("locales", "locale resolution"),
+		DECORATION("decorationModel", "decoration model"),
+		SKIN("skin", "skin resolution"),
+		DISCOVERY("discovery", "page discovery"),
+		UP_TO_DATE_CHECK("upToDateCheck", "up-to-date check"),
+		EXTRACTION("extraction", "menu extraction"),
+		VERIFICATION("verification", "page verification"),
+		SORT("sort", "sort"),
+		WRITE("write", "write");
+
+		private final String key;
+
+		private final String label;
+
+		private Phase(final String key, final String label) {
+			this.key = key;
+			this.label = label;
+		}
+
+	}
+
+	private static String millis(final long nanos) {
+		return String.format(Locale.ENGLISH, "%.3f", Double.valueOf(nanos / 1000000d));
+	}
+
+	private final long start = System.nanoTime();
+
+	private final AtomicLongArray phases = new AtomicLongArray(Phase.values().length);
+
+	private final AtomicLong urls = new AtomicLong();
+
+	/**
+	 * The number of shards of the output, including the ones whose content did not change.
+	 */
+	private final AtomicLong shards = new AtomicLong();
+
+	/**
+	 * The size of all shards and sitemap indexes of the output, including the ones whose content did not change.
+	 */
+	private final AtomicLong totalBytes = new AtomicLong();
+
+	/**
+	 * Adds the time since the given start to a phase.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @param startNanos
+	 *            the start of the phase as returned by {@link System#nanoTime()}
+	 */
+	void addTime(final Phase phase, final long startNanos) {
+		addTimeNanos(phase, System.nanoTime() - startNanos);
+	}
+
+	void addTimeNanos(final Phase phase, final long nanos) {
+		phases.addAndGet(phase.ordinal(), nanos);
+	}
+
+	/**
+	 * Counts the files of a completed sitemap, whether they were replaced or left untouched.
+	 * 
+	 * @param urlCount
+	 *            the number of URLs written
+	 * @param files
+	 *            the shards of the sitemap
+	 * @param indexFile
+	 *            the sitemap index, not counted if it is {@code null} or was not written
+	 */
+	void addWritten(final int urlCount, final Iterable<File> files, final File indexFile) {
+		urls.addAndGet(urlCount);
+		for (final File file : files) {
+			shards.incrementAndGet();
+			totalBytes.addAndGet(file.length());
+		}
+		if (indexFile != null && indexFile.isFile()) {
+			totalBytes.addAndGet(indexFile.length());
+		}
+	}
+
+	long getShards() {
+		return shards.get();
+	}
+
+	/**
+	 * Creates a one line summary for the build log.
+	 * 
+	 * @return the summary
+	 */
+	String getSummary() {
+		final StringBuilder summary = new StringBuilder("Sitemap metrics: ");
+		for (final Phase phase : Phase.values()) {
+			summary.append(phase.label).append(' ').append(millis(phases.get(phase.ordinal()))).append(" ms, ");
+		}
+		summary.append("total ").append(millis(System.nanoTime() - start)).append(" ms; ");
+		summary.append(urls.get()).append(" URL(s), ").append(shards.get()).append(" shard(s), ").append(totalBytes.get())
+				.append(" byte(s) in total.");
+		return summary.toString();
+	}
+
+	long getTimeNanos(final Phase phase) {
+		return phases.get(phase.ordinal());
+	}
+
+	long getTotalBytes() {
+		return totalBytes.get();
+	}
+
+	long getUrls() {
+		return urls.get();
+	}
+
+	/**
+	 * Writes the metrics as JSON document, the timings are given in milliseconds.
+	 * 
+	 * @param file
+	 *            the file to write, its directory is created if necessary
+	 * @throws IOException
+	 *             if the file can not be written
+	 */
+	void store(final File file) throws IOException {
+		file.getParentFile().mkdirs();
+		final StringBuilder json = new StringBuilder(512);
+		json.append("{\n  \"phases\": {");
+		for (final Phase phase : Phase.values()) {
+			json.append(phase.ordinal() == 0 ? "\n" : ",\n");
+			json.append("    \"").append(phase.key).append("\": ").append(millis(phases.get(phase.ordinal())));
+		}
+		json.append("\n  },\n  \"total\": ").append(millis(System.nanoTime() - start));
+		json.append(",\n  \"counters\": {\n    \"urls\": ").append(urls.get());
+		json.append(",\n    \"shards\": ").append(shards.get());
+		json.append(",\n    \"totalBytes\": ").append(totalBytes.get());
+		json.append("\n  }\n}\n");
+
+		final Writer out = new OutputStreamWriter(new FileOutputStream(file), StreamingSitemapWriter.UTF_8);
+		try {
+			out.write(json.toString());
+			out.close();
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+}
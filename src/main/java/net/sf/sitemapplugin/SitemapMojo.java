@@ -17,17 +17,29 @@ package net.sf.sitemapplugin;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.apache.maven.doxia.site.decoration.DecorationModel;
 import org.apache.maven.doxia.siterenderer.SiteRenderingContext;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.codehaus.plexus.util.FileUtils;
 
 import com.redfin.sitemapgenerator.ChangeFreq;
-import com.redfin.sitemapgenerator.W3CDateFormat;
-import com.redfin.sitemapgenerator.W3CDateFormat.Pattern;
-import com.redfin.sitemapgenerator.WebSitemapGenerator;
+
+import net.sf.sitemapplugin.SitemapMetrics.Phase;
 
 /**
  * Generates the sitemap for a single project.
@@ -37,36 +49,210 @@ import com.redfin.sitemapgenerator.WebSitemapGenerator;
  * 
  * @goal sitemap
  * @phase site
+ * @threadSafe
  */
-public final class SitemapMojo extends AbstractSiteRenderingMojo {
+public class SitemapMojo extends AbstractSiteRenderingMojo {
+	/**
+	 * Number of locales whose sitemaps are rendered concurrently. A value of {@code 1} renders the locales one after
+	 * another.
+	 * 
+	 * @parameter expression="${maven.sitemap.threads}" default-value="1"
+	 */
+	private int threads;
+
+	/**
+	 * Whether to read the menus straight from the site descriptor. The skin is not resolved and no rendering context
+	 * is created, because the sitemap only depends on the decoration model.
+	 * 
+	 * @parameter expression="${maven.sitemap.descriptorOnly}" default-value="false"
+	 */
+	private boolean descriptorOnly;
+
+	/**
+	 * Whether to regenerate the sitemaps even if none of their inputs changed since the last build. The inputs are the
+	 * site descriptor, the effective menus, the project URL, the change frequency, the locales and the URL sources.
+	 * 
+	 * @parameter expression="${maven.sitemap.force}" default-value="false"
+	 */
+	private boolean force;
+
+	/**
+	 * Whether to list every rendered page of the output directory in addition to the pages linked from the menus,
+	 * e.g. reports and Javadoc.
+	 * 
+	 * @parameter expression="${maven.sitemap.discover}" default-value="false"
+	 */
+	private boolean discover;
+
+	/**
+	 * Ant-style patterns of the rendered pages to list if {@code discover} is switched on, relative to the output
+	 * directory. Defaults to <code>**&#47;*.html</code>.
+	 * 
+	 * @parameter
+	 */
+	private List<String> discoveryIncludes;
+
+	/**
+	 * Ant-style patterns of the rendered pages not to list if {@code discover} is switched on, relative to the output
+	 * directory. A pattern ending with <code>/**</code> excludes a whole directory without walking it.
+	 * 
+	 * @parameter
+	 */
+	private List<String> discoveryExcludes;
+
+	/**
+	 * Whether to generate a single sitemap for all locales instead of a sitemap per locale. The pages of the locales
+	 * are matched by their links and the translations of every page are listed as hreflang alternates. The skin is not
+	 * resolved in this mode and pages are not discovered.
+	 * 
+	 * @parameter expression="${maven.sitemap.hreflang}" default-value="false"
+	 */
+	private boolean hreflang;
+
+	/**
+	 * Files listing additional URLs which are not linked from the menus, e.g. exported from an application. Every line
+	 * holds a URL, absolute or relative to the project URL, optionally followed by comma-separated columns: the last
+	 * modification date as W3C datetime, the change frequency and the priority. The files are streamed and their URLs
+	 * are added to the sitemap of the default locale after the pages linked from the menus.
+	 * 
+	 * @parameter
+	 */
+	private File[] urlSources;
+
+	/**
+	 * Ant-style patterns of the URLs to list, relative to the project URL, e.g. <code>guide/**</code>. All URLs are
+	 * listed if no pattern is given.
+	 * 
+	 * @parameter
+	 */
+	private List<String> urlIncludes;
+
+	/**
+	 * Ant-style patterns of the URLs not to list, relative to the project URL, e.g. <code>apidocs/</code>,
+	 * <code>**&#47;xref/**</code> or <code>archive/*&#47;**</code>. A pattern ending with <code>/</code> excludes a
+	 * whole subtree. The patterns are compiled once, so thousands of them hardly slow down the generation. The number of
+	 * URLs each include and exclude pattern matched is logged.
+	 * 
+	 * @parameter
+	 */
+	private List<String> urlExcludes;
+
+	/**
+	 * Whether to merge the freshly extracted URLs into the sitemap found in the output directory instead of replacing
+	 * it, e.g. to build up the sitemap of documentation which is published version by version in separate site runs.
+	 * The existing sitemap files are streamed after the fresh URLs, an existing entry is only kept if its location was
+	 * not extracted again. The existing entries are not checked against {@code missingPages}, as their pages usually
+	 * come from earlier site runs.
+	 * 
+	 * @parameter expression="${maven.sitemap.merge}" default-value="false"
+	 */
+	private boolean merge;
+
 	/**
-	 * Directory where the project sites and report distributions will be generated.
+	 * What to do with URLs whose page was not rendered into the output directory: {@code ignore} does not check the
+	 * pages, {@code warn} logs the URLs, {@code drop} leaves them out of the sitemap and {@code fail} fails the build.
+	 * URLs outside the project URL are not checked. As the rendered pages are no input of the up-to-date check, a
+	 * sitemap is only checked again if it is regenerated.
 	 * 
-	 * @parameter expression="${siteOutputDirectory}" default-value="${project.reporting.outputDirectory}"
+	 * @parameter expression="${maven.sitemap.missingPages}" default-value="ignore"
 	 */
-	private File outputDirectory;
+	private String missingPages;
 
 	/**
-	 * Whether to validate xml input documents. If set to true, <strong>all</strong> input documents in xml format (in
-	 * particular xdoc and fml) will be validated and any error will lead to a build failure.
+	 * Whether to list the URLs sorted by location instead of in the order of the menus, so that the sitemap files only
+	 * change if URLs are added or removed, e.g. to keep unchanged shards cacheable. URLs which do not fit into
+	 * {@code sortBufferSize} are sorted in runs on disk and merged, so that any number of URLs can be sorted.
 	 * 
-	 * @parameter expression="${validate}" default-value="false"
+	 * @parameter expression="${maven.sitemap.sort}" default-value="false"
 	 */
-	private boolean validate;
+	private boolean sort;
 
 	/**
-	 * Set this to 'true' to skip site generation.
+	 * Estimated memory in megabytes the URLs may take while they are sorted before they are spilled to disk.
 	 * 
-	 * @parameter expression="${maven.sitemap.skip}" default-value="false"
+	 * @parameter expression="${maven.sitemap.sortBufferSize}" default-value="64"
 	 */
-	private boolean skip;
+	private int sortBufferSize;
+
+	private ExecutorService verificationExecutor;
+
+	private UrlFilter urlFilter;
+
+	/**
+	 * Creates the sink which drops the URLs not matching {@code urlIncludes} or matching {@code urlExcludes}.
+	 * 
+	 * @return the sink or {@code null} if no patterns are configured
+	 */
+	private FilteringUrlSink createFilteringSink(final UrlSink delegate) {
+		final UrlFilter filter = getUrlFilter();
+		return filter == null ? null : new FilteringUrlSink(project.getUrl(), filter, delegate);
+	}
+
+	private SitemapFingerprint createFingerprint(final Locale locale, final DecorationModel decoration, final ChangeFreq changeFreq,
+			final SourceTimestampIndex timestamps) throws IOException {
+		final SitemapFingerprint fingerprint = new SitemapFingerprint();
+		fingerprint.putFile("descriptor", siteTool.getSiteDescriptorFromBasedir(getRelativeSiteDirectory(), project.getBasedir(), locale));
+		fingerprint.putMenus("menus", decoration.getMenus());
+		putProjectInputs(fingerprint, changeFreq, timestamps);
+		return fingerprint;
+	}
+
+	/**
+	 * Creates the sink which sorts the URLs by location.
+	 * 
+	 * @return the sink or {@code null} if {@code sort} is switched off
+	 */
+	private SortingUrlSink createSortingSink(final String name, final UrlSink delegate) {
+		if (!sort) {
+			return null;
+		}
+		return new SortingUrlSink(new File(project.getBuild().getDirectory(), "sitemap/sort-" + name), sortBufferSize * 1024L * 1024L,
+				delegate);
+	}
 
 	/**
-	 * How frequently the site is likely to change.
+	 * Creates the sink which checks that the URLs point to pages rendered into the output directory.
 	 * 
-	 * @parameter expression="${changeFreq}" default-value="MONTHLY"
+	 * @return the sink or {@code null} if {@code missingPages} is {@code ignore}
 	 */
-	private String changeFreq;
+	private VerifyingUrlSink createVerifyingSink(final File outputDir, final UrlSink delegate) throws MojoExecutionException {
+		final VerifyingUrlSink.Action action = getMissingPageAction();
+		if (action == null) {
+			return null;
+		}
+		return new VerifyingUrlSink(new RenderedPages(project.getUrl(), outputDir), action, getVerificationExecutor(), Runtime
+				.getRuntime().availableProcessors(), delegate);
+	}
+
+	/**
+	 * Finds the rendered pages of a locale. The sites of the other locales are excluded, as they are located in
+	 * subdirectories of the site of the default locale.
+	 */
+	private SortedMap<String, Long> discoverPages(final File outputDir, final Locale defaultLocale, final SitemapMetrics metrics)
+			throws IOException {
+		final List<String> includes = discoveryIncludes == null || discoveryIncludes.isEmpty() ? Collections
+				.singletonList("**/*.html") : discoveryIncludes;
+		final List<String> excludes = new ArrayList<String>();
+		if (discoveryExcludes != null) {
+			excludes.addAll(discoveryExcludes);
+		}
+		if (outputDir.equals(outputDirectory)) {
+			for (final Locale other : siteTool.getAvailableLocales(locales)) {
+				if (!other.getLanguage().equals(defaultLocale.getLanguage())) {
+					excludes.add(other.getLanguage() + "/**");
+				}
+			}
+		}
+
+		final long start = System.nanoTime();
+		final SortedMap<String, Long> pages = new SiteCrawler(outputDir, includes, excludes, Runtime.getRuntime().availableProcessors())
+				.crawl();
+		metrics.addTime(Phase.DISCOVERY, start);
+		if (getLog().isDebugEnabled()) {
+			getLog().debug("Found " + pages.size() + " page(s) in " + outputDir + ".");
+		}
+		return pages;
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -88,64 +274,582 @@ public final class SitemapMojo extends AbstractSiteRenderingMojo {
 			getLog().debug("executing Site Mojo");
 		}
 
+		final SitemapMetrics metrics = new SitemapMetrics();
 		try {
+			final long start = System.nanoTime();
 			final List<Locale> localesList = siteTool.getAvailableLocales(locales);
+			metrics.addTime(Phase.LOCALES, start);
 
 			// Default is first in the list
 			final Locale defaultLocale = localesList.get(0);
-			Locale.setDefault(defaultLocale);
 
-			for (final Locale locale : localesList) {
-				render(locale);
+			// The template properties are only needed to create a full rendering context
+			final Map<String, Object> attributes = descriptorOnly ? null : createAttributes();
+
+			// Modification times of the source documents, shared by all locales
+			final SourceTimestampIndex timestamps = SourceTimestampIndex.build(siteDirectory, generatedSiteDirectory);
+
+			if (isAlternates(localesList)) {
+				renderAlternates(localesList, timestamps, metrics);
+			} else if (threads > 1 && localesList.size() > 1) {
+				renderConcurrently(localesList, defaultLocale, attributes, timestamps, metrics);
+			} else {
+				for (final Locale locale : localesList) {
+					render(locale, defaultLocale, attributes, timestamps, metrics);
+				}
 			}
+
+			getLog().info(metrics.getSummary());
+			metrics.store(getMetricsFile());
+		} catch (final MojoExecutionException e) {
+			throw e;
+		} catch (final MojoFailureException e) {
+			throw e;
 		} catch (final Exception e) {
 			throw new MojoExecutionException("Error during sitemap generation", e);
+		} finally {
+			shutdownVerificationExecutor();
 		}
 	}
 
-	private File getOutputDirectory(final Locale locale) {
-		File file;
-		if (locale.getLanguage().equals(Locale.getDefault().getLanguage())) {
-			file = outputDirectory;
-		} else {
-			file = new File(outputDirectory, locale.getLanguage());
+	/**
+	 * Completes a sitemap, records its metrics and stores its fingerprint.
+	 * 
+	 * @param start
+	 *            the time the extraction started at, in nanoseconds
+	 */
+	private void finish(final StreamingSitemapWriter writer, final NormalizingUrlSink sink, final FilteringUrlSink filter,
+			final SortingUrlSink sorter, final VerifyingUrlSink verifier, final long start, final SitemapFingerprint fingerprint,
+			final File fingerprintFile, final SitemapMetrics metrics) throws IOException, MojoFailureException {
+		sink.finish();
+		// The writer is fed while the menus are walked, so its file time is split off the extraction
+		final long verificationTime = verifier == null ? 0L : verifier.getTime();
+		final long sortTime = sorter == null ? 0L : sorter.getTime();
+		metrics.addTimeNanos(Phase.EXTRACTION, System.nanoTime() - start - writer.getFileTime() - verificationTime - sortTime);
+		metrics.addTimeNanos(Phase.VERIFICATION, verificationTime);
+		metrics.addTimeNanos(Phase.SORT, sortTime);
+		metrics.addTimeNanos(Phase.WRITE, writer.getFileTime());
+		metrics.addWritten(writer.getUrlCount(), writer.getFiles(), writer.getIndexFile());
+		if (sink.getDuplicateCount() > 0) {
+			getLog().info("Dropped " + sink.getDuplicateCount() + " duplicate URL(s).");
+		}
+		if (filter != null) {
+			logMatchCounts(filter);
+		}
+		if (sorter != null) {
+			getLog().info("Sorted " + sorter.getUrlCount() + " URL(s) in " + sortTime / 1000000L + " ms using " + sorter.getRunCount()
+					+ " run file(s).");
+		}
+		if (verifier != null) {
+			reportMissingPages(verifier);
+		}
+		for (final File file : writer.getDeletedFiles()) {
+			getLog().info("Deleted stale Sitemap: " + file.getPath());
+		}
+		if (writer.getFiles().isEmpty()) {
+			getLog().warn("No URLs found in the site descriptor, no sitemap generated.");
+			return;
+		}
+		for (final File file : writer.getFiles()) {
+			getLog().info("Generated Sitemap: " + file.getPath());
+		}
+		if (writer.getFiles().size() > 1) {
+			getLog().info("Generated Sitemap index: " + writer.getIndexFile().getPath());
+		}
+		if (writer.getUnchangedFileCount() > 0) {
+			getLog().info("Kept " + writer.getUnchangedFileCount() + " unchanged sitemap file(s) untouched.");
 		}
+		fingerprint.store(fingerprintFile);
+	}
+
+	/**
+	 * Adds the URLs of the {@code urlSources}.
+	 */
+	private void generateUrlSources(final Sitemap sitemap, final StreamingSitemapWriter writer, final SortingUrlSink sorter,
+			final UrlSink sink, final ChangeFreq changeFreq) throws IOException {
+		for (final File source : urlSources) {
+			final int before = getUrlCount(writer, sorter);
+			sitemap.generateUrls(project, source, sink, changeFreq);
+			getLog().info("Added " + (getUrlCount(writer, sorter) - before) + " URL(s) from " + source + ".");
+		}
+	}
+
+	private File getFingerprintFile(final String name) {
+		return new File(project.getBuild().getDirectory(), "sitemap/fingerprint-" + name + ".properties");
+	}
 
-		// Safety
-		if (!file.exists()) {
-			file.mkdirs();
+	private File getMetricsFile() {
+		return new File(project.getBuild().getDirectory(), "sitemap/metrics.json");
+	}
+
+	/**
+	 * Gets the configured handling of URLs whose page was not rendered.
+	 * 
+	 * @return the action or {@code null} if the pages are not checked
+	 * @throws MojoExecutionException
+	 *             if the value of {@code missingPages} is unknown
+	 */
+	private VerifyingUrlSink.Action getMissingPageAction() throws MojoExecutionException {
+		if (missingPages == null || missingPages.equalsIgnoreCase("ignore")) {
+			return null;
+		}
+		try {
+			return VerifyingUrlSink.Action.valueOf(missingPages.toUpperCase(Locale.ENGLISH));
+		} catch (final IllegalArgumentException e) {
+			throw new MojoExecutionException("Handling of missing pages '" + missingPages + "' is wrong, use ignore, warn, drop or fail.",
+					e);
 		}
+	}
 
-		return file;
+	/**
+	 * Checks whether the sitemap of a locale has to be generated.
+	 * 
+	 * @return why the sitemap has to be generated or {@code null} if it is up to date
+	 */
+	private String getRegenerationReason(final File fingerprintFile, final SitemapFingerprint fingerprint, final File outputDir,
+			final SitemapMetrics metrics) throws IOException {
+		final long start = System.nanoTime();
+		try {
+			if (force) {
+				return "regeneration is forced";
+			}
+			final String extension = getCompressionLevel() == StreamingSitemapWriter.NO_COMPRESSION ? "" : ".gz";
+			if (!new File(outputDir, Sitemap.FILE_NAME + extension).exists() && !new File(outputDir, Sitemap.INDEX_FILE_NAME).exists()) {
+				return "no sitemap found in " + outputDir;
+			}
+			final SitemapFingerprint previous = SitemapFingerprint.load(fingerprintFile);
+			if (previous == null) {
+				return "no fingerprint of a previous build found";
+			}
+			final List<String> changed = fingerprint.getChangedInputs(previous);
+			return changed.isEmpty() ? null : "changed inputs " + changed;
+		} finally {
+			metrics.addTime(Phase.UP_TO_DATE_CHECK, start);
+		}
 	}
 
-	private void render(final Locale locale) throws IOException, MojoExecutionException, MojoFailureException {
-		final SiteRenderingContext context = createSiteRenderingContext(locale);
+	/**
+	 * Gets the number of URLs passed on so far.
+	 * 
+	 * @return the number of URLs the sorter received, as sorted URLs only reach the writer when the sitemap is finished
+	 */
+	private int getUrlCount(final StreamingSitemapWriter writer, final SortingUrlSink sorter) {
+		return sorter == null ? writer.getUrlCount() : sorter.getUrlCount();
+	}
+
+	/**
+	 * Gets the URL filter, which is compiled when it is first used and then shared by all locales.
+	 * 
+	 * @return the filter or {@code null} if no patterns are configured
+	 */
+	private synchronized UrlFilter getUrlFilter() {
+		if (urlFilter == null && (urlIncludes != null && !urlIncludes.isEmpty() || urlExcludes != null && !urlExcludes.isEmpty())) {
+			urlFilter = new UrlFilter(urlIncludes, urlExcludes);
+		}
+		return urlFilter;
+	}
+
+	/**
+	 * Gets the executor looking up the rendered pages, which is created when it is first used and then shared by all
+	 * locales.
+	 * 
+	 * @return the executor with a thread per processor
+	 */
+	private synchronized ExecutorService getVerificationExecutor() {
+		if (verificationExecutor == null) {
+			verificationExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		}
+		return verificationExecutor;
+	}
+
+	/**
+	 * Gets whether a single sitemap with hreflang alternates is generated for the given locales.
+	 */
+	boolean isAlternates(final List<Locale> localesList) {
+		return hreflang && localesList.size() > 1;
+	}
+
+	/**
+	 * Logs how many URLs every rule of the URL filter matched. Rules without matches are only listed in debug mode, as
+	 * there may be thousands of them.
+	 */
+	private void logMatchCounts(final FilteringUrlSink filter) {
+		getLog().info("Dropped " + filter.getDroppedCount() + " URL(s) by the URL filter.");
+		int unmatched = 0;
+		for (final Map.Entry<String, Integer> count : filter.getMatchCounts().entrySet()) {
+			if (count.getValue().intValue() > 0) {
+				getLog().info("URL filter rule '" + count.getKey() + "' matched " + count.getValue() + " URL(s).");
+			} else {
+				unmatched++;
+				if (getLog().isDebugEnabled()) {
+					getLog().debug("URL filter rule '" + count.getKey() + "' matched no URL.");
+				}
+			}
+		}
+		if (unmatched > 0) {
+			getLog().info(unmatched + " URL filter rule(s) matched no URL.");
+		}
+	}
+
+	/**
+	 * Streams the entries of the existing sitemap into the sink, which drops those whose location was extracted again.
+	 * The copies are deleted once they are read. The entries are not verified, as their pages were rendered by earlier
+	 * builds and are usually not found in the output directory, so {@code missingPages=drop} does not drop them.
+	 */
+	private void mergeExistingSitemaps(final List<File> existing, final StreamingSitemapWriter writer, final SortingUrlSink sorter,
+			final VerifyingUrlSink verifier, final UrlSink sink) throws IOException {
+		if (verifier != null) {
+			verifier.passThrough();
+		}
+		final int before = getUrlCount(writer, sorter);
+		final SitemapReader reader = new SitemapReader();
+		int read = 0;
+		for (final File file : existing) {
+			read += reader.read(file, sink);
+			file.delete();
+		}
+		getLog().info("Merged " + (getUrlCount(writer, sorter) - before) + " of " + read + " URL(s) of the existing sitemap.");
+	}
+
+	/**
+	 * Adds the inputs which are shared by the sitemaps of all locales.
+	 */
+	private void putProjectInputs(final SitemapFingerprint fingerprint, final ChangeFreq changeFreq, final SourceTimestampIndex timestamps) {
+		fingerprint.putValue("url", project.getUrl());
+		fingerprint.putValue("changeFreq", changeFreq.name());
+		fingerprint.putValue("locales", String.valueOf(siteTool.getAvailableLocales(locales)));
+		fingerprint.putTimestamps("sources", timestamps.getTimestamps());
+		fingerprint.putValue("compression", String.valueOf(getCompressionLevel()));
+		fingerprint.putValue("urlFilter", urlIncludes + " " + urlExcludes);
+		fingerprint.putValue("hreflang", String.valueOf(hreflang));
+		fingerprint.putValue("merge", String.valueOf(merge));
+		fingerprint.putValue("missingPages", missingPages);
+		fingerprint.putValue("sort", String.valueOf(sort));
+	}
+
+	/**
+	 * Adds the {@code urlSources}, which are only listed in the sitemap of the default locale.
+	 */
+	private void putUrlSources(final SitemapFingerprint fingerprint) throws IOException {
+		for (int i = 0; i < urlSources.length; i++) {
+			fingerprint.putFile("urlSource-" + i, urlSources[i]);
+		}
+	}
+
+	private void render(final Locale locale, final Locale defaultLocale, final Map<String, Object> attributes,
+			final SourceTimestampIndex timestamps, final SitemapMetrics metrics) throws IOException, MojoExecutionException,
+			MojoFailureException {
+		final long start = System.nanoTime();
+		final DecorationModel decoration = getDecorationModel(locale);
+		metrics.addTime(Phase.DECORATION, start);
+		render(locale, defaultLocale, decoration, attributes, timestamps, metrics);
+	}
+
+	/**
+	 * Renders the sitemap of a locale from its resolved decoration model, unless it is up to date.
+	 * 
+	 * @param attributes
+	 *            the template properties to resolve the skin with, or {@code null} to take the menus straight from the
+	 *            decoration model
+	 */
+	void render(final Locale locale, final Locale defaultLocale, final DecorationModel resolved,
+			final Map<String, Object> attributes, final SourceTimestampIndex timestamps, final SitemapMetrics metrics)
+			throws IOException, MojoExecutionException, MojoFailureException {
+		long start;
+		DecorationModel decoration = resolved;
+		final ChangeFreq changeFreq = getChangeFreq();
+
+		final File outputDir = getOutputDirectory(locale, defaultLocale);
+		final SortedMap<String, Long> pages = discover ? discoverPages(outputDir, defaultLocale, metrics) : null;
+		final File fingerprintFile = getFingerprintFile(locale.toString());
+		final SitemapFingerprint fingerprint = createFingerprint(locale, decoration, changeFreq, timestamps);
+		if (pages != null) {
+			// Only the paths, the rendered files are touched by every site run
+			fingerprint.putPaths("pages", pages.keySet());
+		}
+		final boolean withUrlSources = urlSources != null && outputDir.equals(outputDirectory);
+		if (withUrlSources) {
+			putUrlSources(fingerprint);
+		}
+		final String reason = getRegenerationReason(fingerprintFile, fingerprint, outputDir, metrics);
+		if (reason == null) {
+			getLog().info("Sitemap for locale '" + locale + "' is up to date.");
+			return;
+		}
+		getLog().info("Generating Sitemap, " + reason + ".");
+
+		// The fingerprint covers the menus of the site descriptor, so the skin is only resolved for a new sitemap
+		if (attributes != null) {
+			start = System.nanoTime();
+			final SiteRenderingContext context = createSiteRenderingContext(locale, defaultLocale, attributes, decoration);
+			context.setInputEncoding(getInputEncoding());
+			context.setOutputEncoding(getOutputEncoding());
+			context.setValidate(validate);
+			decoration = context.getDecoration();
+			metrics.addTime(Phase.SKIN, start);
+		}
 
-		context.setInputEncoding(getInputEncoding());
-		context.setOutputEncoding(getOutputEncoding());
-		context.setValidate(validate);
 		if (validate) {
 			getLog().info("Validation is switched on, xml input documents will be validated!");
 		}
 
-		final ChangeFreq changeFreq = ChangeFreq.valueOf(this.changeFreq.toUpperCase());
-		if (changeFreq == null) {
-			getLog().error("Change frequency must be set or is wrong.");
+		final List<File> existing = merge ? stageExistingSitemaps(outputDir, locale.toString()) : null;
+		final StreamingSitemapWriter writer = createSitemapWriter(project.getUrl(), outputDir, "sitemap");
+		writer.setIndexFile(new File(outputDir, Sitemap.INDEX_FILE_NAME));
+		final Sitemap sitemap = new Sitemap(getOutputEncoding(), i18n);
+		sitemap.setTimestampIndex(timestamps);
+		if (!outputDir.equals(outputDirectory)) {
+			sitemap.setLanguage(locale.getLanguage());
+		}
+		final SortingUrlSink sorter = createSortingSink(locale.toString(), writer);
+		try {
+			UrlSink target = writer;
+			if (sorter != null) {
+				target = sorter;
+			}
+			// Verified before sorting, so that the merged entries can skip the verification
+			final VerifyingUrlSink verifier = createVerifyingSink(outputDir, target);
+			if (verifier != null) {
+				target = verifier;
+			}
+			if (sorter != null || verifier != null) {
+				// Buffered URLs would fail when the buffer is flushed, without the menu item they come from
+				target = new CheckingUrlSink(writer, target);
+			}
+			final FilteringUrlSink filter = createFilteringSink(target);
+			if (filter != null) {
+				target = filter;
+			}
+			final NormalizingUrlSink sink = new NormalizingUrlSink(new CompactUrlSet(), target);
+			start = System.nanoTime();
+			sitemap.generate(project, decoration, sink, changeFreq);
+			if (pages != null) {
+				final int linked = getUrlCount(writer, sorter);
+				sitemap.generatePages(project, pages, sink, changeFreq);
+				getLog().info("Discovered " + (getUrlCount(writer, sorter) - linked) + " page(s) not linked from the menus.");
+			}
+			if (withUrlSources) {
+				generateUrlSources(sitemap, writer, sorter, sink, changeFreq);
+			}
+			if (existing != null) {
+				mergeExistingSitemaps(existing, writer, sorter, verifier, sink);
+			}
+			finish(writer, sink, filter, sorter, verifier, start, fingerprint, fingerprintFile, metrics);
+		} finally {
+			if (sorter != null) {
+				sorter.abort();
+			}
+			writer.abort();
+		}
+	}
+
+	/**
+	 * Renders the sitemap of all locales with hreflang alternates into the output directory of the default locale.
+	 */
+	private void renderAlternates(final List<Locale> localesList, final SourceTimestampIndex timestamps, final SitemapMetrics metrics)
+			throws IOException, MojoExecutionException, MojoFailureException {
+		final Map<Locale, DecorationModel> decorations = new LinkedHashMap<Locale, DecorationModel>();
+		for (final Locale locale : localesList) {
+			final long start = System.nanoTime();
+			decorations.put(locale, getDecorationModel(locale));
+			metrics.addTime(Phase.DECORATION, start);
+		}
+		renderAlternates(localesList, decorations, timestamps, metrics);
+	}
+
+	/**
+	 * Renders the sitemap of all locales with hreflang alternates from their resolved decoration models, unless it is up
+	 * to date.
+	 */
+	void renderAlternates(final List<Locale> localesList, final Map<Locale, DecorationModel> decorations,
+			final SourceTimestampIndex timestamps, final SitemapMetrics metrics) throws IOException, MojoExecutionException,
+			MojoFailureException {
+		final ChangeFreq changeFreq = getChangeFreq();
+		final SitemapFingerprint fingerprint = new SitemapFingerprint();
+		for (final Locale locale : localesList) {
+			fingerprint.putFile("descriptor-" + locale,
+					siteTool.getSiteDescriptorFromBasedir(getRelativeSiteDirectory(), project.getBasedir(), locale));
+			fingerprint.putMenus("menus-" + locale, decorations.get(locale).getMenus());
+		}
+		putProjectInputs(fingerprint, changeFreq, timestamps);
+		if (urlSources != null) {
+			putUrlSources(fingerprint);
+		}
+
+		final File outputDir = getOutputDirectory(localesList.get(0), localesList.get(0));
+		// Both kinds of sitemap are written to the same directory, so they share the fingerprint file
+		final File fingerprintFile = getFingerprintFile(localesList.get(0).toString());
+		final String reason = getRegenerationReason(fingerprintFile, fingerprint, outputDir, metrics);
+		if (reason == null) {
+			getLog().info("Sitemap with hreflang alternates is up to date.");
 			return;
 		}
+		getLog().info("Generating Sitemap with hreflang alternates for locales " + localesList + ", " + reason + ".");
+
+		final List<File> existing = merge ? stageExistingSitemaps(outputDir, "hreflang") : null;
+		final StreamingSitemapWriter writer = createSitemapWriter(project.getUrl(), outputDir, "sitemap");
+		writer.setIndexFile(new File(outputDir, Sitemap.INDEX_FILE_NAME));
+		final Sitemap sitemap = new Sitemap(getOutputEncoding(), i18n);
+		sitemap.setTimestampIndex(timestamps);
+		final SortingUrlSink sorter = createSortingSink("hreflang", writer);
+		try {
+			UrlSink target = writer;
+			if (sorter != null) {
+				target = sorter;
+			}
+			// Verified before sorting, so that the merged entries can skip the verification
+			final VerifyingUrlSink verifier = createVerifyingSink(outputDir, target);
+			if (verifier != null) {
+				target = verifier;
+			}
+			if (sorter != null || verifier != null) {
+				// Buffered URLs would fail when the buffer is flushed, without the menu item they come from
+				target = new CheckingUrlSink(writer, target);
+			}
+			final FilteringUrlSink filter = createFilteringSink(target);
+			if (filter != null) {
+				target = filter;
+			}
+			final NormalizingUrlSink sink = new NormalizingUrlSink(new CompactUrlSet(), target);
+			final long start = System.nanoTime();
+			sitemap.generateAlternates(project, decorations, sink, changeFreq);
+			if (urlSources != null) {
+				generateUrlSources(sitemap, writer, sorter, sink, changeFreq);
+			}
+			if (existing != null) {
+				mergeExistingSitemaps(existing, writer, sorter, verifier, sink);
+			}
+			finish(writer, sink, filter, sorter, verifier, start, fingerprint, fingerprintFile, metrics);
+		} finally {
+			if (sorter != null) {
+				sorter.abort();
+			}
+			writer.abort();
+		}
+	}
 
-		final File outputDir = getOutputDirectory(locale);
-		getLog().info("Generating Sitemap.");
+	private void renderConcurrently(final List<Locale> localesList, final Locale defaultLocale, final Map<String, Object> attributes,
+			final SourceTimestampIndex timestamps, final SitemapMetrics metrics) throws MojoExecutionException {
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, localesList.size()));
+		try {
+			final Map<Locale, Future<Void>> futures = new LinkedHashMap<Locale, Future<Void>>();
+			for (final Locale locale : localesList) {
+				futures.put(locale, executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						render(locale, defaultLocale, attributes, timestamps, metrics);
+						return null;
+					}
+				}));
+			}
 
-		final W3CDateFormat dateFormat = new W3CDateFormat(Pattern.DAY);
-		final WebSitemapGenerator generator = WebSitemapGenerator.builder(project.getUrl(), outputDir).autoValidate(validate)
-				.dateFormat(dateFormat).build();
-		new Sitemap(getOutputEncoding(), i18n).generate(project, context.getDecoration(), generator, changeFreq);
-		final List<File> files = generator.write();
-		for (final File file : files) {
-			getLog().info("Generated Sitemap: " + file.getPath());
+			// Wait for every locale, so that all failures are reported and not only the first one
+			final Map<Locale, Throwable> failures = new LinkedHashMap<Locale, Throwable>();
+			for (final Map.Entry<Locale, Future<Void>> entry : futures.entrySet()) {
+				try {
+					entry.getValue().get();
+				} catch (final ExecutionException e) {
+					getLog().error("Error during sitemap generation for locale '" + entry.getKey() + "'", e.getCause());
+					failures.put(entry.getKey(), e.getCause());
+				}
+			}
+
+			if (!failures.isEmpty()) {
+				throw new MojoExecutionException("Error during sitemap generation for locale(s) " + failures.keySet(), failures
+						.values().iterator().next());
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted during sitemap generation", e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Reports the URLs whose page was not rendered, as configured by {@code missingPages}.
+	 * 
+	 * @throws MojoFailureException
+	 *             if pages are missing and the build has to fail
+	 */
+	private void reportMissingPages(final VerifyingUrlSink verifier) throws MojoFailureException {
+		getLog().info("Verified " + verifier.getCheckedCount() + " URL(s) against the rendered pages in "
+				+ verifier.getTime() / 1000000L + " ms.");
+		final int missingCount = verifier.getMissingCount();
+		if (missingCount == 0) {
+			return;
+		}
+
+		final List<String> missing = verifier.getMissing();
+		final String summary = missingCount + " URL(s) point to pages which were not rendered";
+		final String more = missingCount > missing.size() ? " and " + (missingCount - missing.size()) + " more" : "";
+		switch (verifier.getAction()) {
+		case DROP:
+			getLog().info("Dropped " + summary + ".");
+			if (getLog().isDebugEnabled()) {
+				getLog().debug("Dropped " + missing + more + ".");
+			}
+			break;
+		case FAIL:
+			throw new MojoFailureException(summary + ": " + missing + more);
+		default:
+			getLog().warn(summary + ":");
+			for (final String location : missing) {
+				getLog().warn("  " + location);
+			}
+			if (more.length() > 0) {
+				getLog().warn(" " + more);
+			}
+		}
+	}
+
+	synchronized void shutdownVerificationExecutor() {
+		if (verificationExecutor != null) {
+			verificationExecutor.shutdownNow();
+			verificationExecutor = null;
+		}
+	}
+
+	/**
+	 * Copies the files of the existing sitemap aside, as the writer replaces them while they are merged. The files are
+	 * taken from the sitemap index, or the single sitemap file, whichever was written last: a run before stale files
+	 * were deleted may have left the other one behind.
+	 * 
+	 * @return the copies, in the order of the index
+	 */
+	private List<File> stageExistingSitemaps(final File outputDir, final String name) throws IOException {
+		File current = null;
+		for (final String fileName : Arrays.asList(Sitemap.INDEX_FILE_NAME, Sitemap.FILE_NAME, Sitemap.FILE_NAME + ".gz")) {
+			final File file = new File(outputDir, fileName);
+			if (file.isFile() && (current == null || file.lastModified() > current.lastModified())) {
+				current = file;
+			}
+		}
+		if (current == null) {
+			return Collections.emptyList();
+		}
+		final List<String> fileNames = new ArrayList<String>();
+		if (current.getName().equals(Sitemap.INDEX_FILE_NAME)) {
+			for (final String location : new SitemapReader().readIndex(current)) {
+				fileNames.add(location.substring(location.lastIndexOf('/') + 1));
+			}
+		} else {
+			fileNames.add(current.getName());
+		}
+
+		final File stagingDir = new File(project.getBuild().getDirectory(), "sitemap/merge-" + name);
+		FileUtils.deleteDirectory(stagingDir);
+		stagingDir.mkdirs();
+		final List<File> copies = new ArrayList<File>();
+		for (final String fileName : fileNames) {
+			final File file = new File(outputDir, fileName);
+			if (file.isFile()) {
+				final File copy = new File(stagingDir, fileName);
+				FileUtils.copyFile(file, copy);
+				copies.add(copy);
+			}
 		}
+		return copies;
 	}
 
 }
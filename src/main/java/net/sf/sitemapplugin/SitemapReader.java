@@ -0,0 +1,200 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+/**
+ * Streams the entries of existing sitemap and sitemap index files with StAX, so that only the entry being read is held
+ * in memory. Files whose name ends with {@code .gz} are decompressed.
+ * <p>
+ * A reader reuses its date parser and must not be shared by several threads.
+ * </p>
+ */
+final class SitemapReader {
+
+	private static final String XHTML_NAMESPACE = "http://www.w3.org/1999/xhtml";
+
+	private static IOException createException(final File file, final String reason) {
+		return new IOException("Invalid sitemap '" + file + "': " + reason);
+	}
+
+	private final W3CDateParser dates = new W3CDateParser();
+
+	private final XMLInputFactory factory;
+
+	/**
+	 * Constructor creates a reader which does not resolve DTDs and external entities.
+	 */
+	SitemapReader() {
+		factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
+	private InputStream open(final File file) throws IOException {
+		final InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024);
+		if (!file.getName().endsWith(".gz")) {
+			return in;
+		}
+		try {
+			return new GZIPInputStream(in);
+		} catch (final IOException e) {
+			IOUtil.close(in);
+			throw e;
+		}
+	}
+
+	private ChangeFreq parseChangeFreq(final File file, final String value) throws IOException {
+		try {
+			return ChangeFreq.valueOf(value.toUpperCase(Locale.ENGLISH));
+		} catch (final IllegalArgumentException e) {
+			throw createException(file, "'" + value + "' is not a change frequency");
+		}
+	}
+
+	private long parseDate(final File file, final String value) throws IOException {
+		try {
+			return dates.parse(value);
+		} catch (final IllegalArgumentException e) {
+			throw createException(file, e.getMessage());
+		}
+	}
+
+	private Double parsePriority(final File file, final String value) throws IOException {
+		try {
+			return Double.valueOf(value);
+		} catch (final NumberFormatException e) {
+			throw createException(file, "'" + value + "' is not a priority");
+		}
+	}
+
+	/**
+	 * Reads the entries of a sitemap file. Entries without change frequency get none, the translations listed as
+	 * {@code xhtml:link} elements are kept.
+	 * 
+	 * @param file
+	 *            the sitemap file
+	 * @param sink
+	 *            the sink receiving the entries in the order of the file
+	 * @return the number of entries read
+	 * @throws IOException
+	 *             if the file can not be read or is not a valid sitemap
+	 */
+	int read(final File file, final UrlSink sink) throws IOException {
+		final InputStream in = open(file);
+		try {
+			final XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				int count = 0;
+				String location = null;
+				long lastModified = 0L;
+				ChangeFreq changeFreq = null;
+				Double priority = null;
+				final Map<String, String> alternates = new LinkedHashMap<String, String>();
+				while (reader.hasNext()) {
+					final int event = reader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						final String name = reader.getLocalName();
+						if (XHTML_NAMESPACE.equals(reader.getNamespaceURI())) {
+							if (name.equals("link") && "alternate".equals(reader.getAttributeValue(null, "rel"))) {
+								alternates.put(reader.getAttributeValue(null, "hreflang"), reader.getAttributeValue(null, "href"));
+							}
+						} else if (name.equals("url")) {
+							location = null;
+							lastModified = 0L;
+							changeFreq = null;
+							priority = null;
+							alternates.clear();
+						} else if (name.equals("loc")) {
+							location = reader.getElementText().trim();
+						} else if (name.equals("lastmod")) {
+							lastModified = parseDate(file, reader.getElementText().trim());
+						} else if (name.equals("changefreq")) {
+							changeFreq = parseChangeFreq(file, reader.getElementText().trim());
+						} else if (name.equals("priority")) {
+							priority = parsePriority(file, reader.getElementText().trim());
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("url")) {
+						if (location == null || location.length() == 0) {
+							throw createException(file, "entry " + (count + 1) + " has no location");
+						}
+						sink.add(new SitemapUrl(location, lastModified, changeFreq, priority, alternates));
+						count++;
+					}
+				}
+				return count;
+			} finally {
+				reader.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw createException(file, e.getMessage());
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	/**
+	 * Reads the locations of the sitemaps listed by a sitemap index file.
+	 * 
+	 * @param file
+	 *            the sitemap index file
+	 * @return the URLs of the sitemaps in the order of the file
+	 * @throws IOException
+	 *             if the file can not be read or is not valid XML
+	 */
+	List<String> readIndex(final File file) throws IOException {
+		final List<String> locations = new ArrayList<String>();
+		final InputStream in = open(file);
+		try {
+			final XMLStreamReader reader = factory.createXMLStreamReader(in);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("loc")) {
+						locations.add(reader.getElementText().trim());
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (final XMLStreamException e) {
+			throw createException(file, e.getMessage());
+		} finally {
+			IOUtil.close(in);
+		}
+		return locations;
+	}
+
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+import com.redfin.sitemapgenerator.W3CDateFormat;
+
+/**
+ * Renders a sitemap into memory, so that a running application can serve it without touching the filesystem.
+ * <p>
+ * The URLs are taken from the menus of a site or from any other source, either added one after another followed by
+ * {@link #finish()} or passed to {@link #update(Collection)} at once. Shards and the index are named like the files of
+ * {@link StreamingSitemapWriter} and held as {@link RenderedSitemap}s together with their ETags. When the URLs change
+ * only the shards whose URLs changed are rendered again, all others are kept including their last modification time.
+ * A new shard ends where a cached shard starts, so adding or removing a URL does not move the following shards.
+ * </p>
+ * <p>
+ * The rendered sitemaps are replaced at once when an update is complete, so {@link #get(String)} can be called by
+ * any thread at any time.
+ * </p>
+ */
+public final class SitemapRenderer implements UrlSink {
+
+	private final String baseUrl;
+
+	private final SitemapEntryEncoder encoder = new SitemapEntryEncoder();
+
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64 * 1024);
+
+	private List<SitemapUrl> pending = new ArrayList<SitemapUrl>();
+
+	private List<RenderedSitemap> shards = Collections.emptyList();
+
+	private RenderedSitemap index;
+
+	private volatile Map<String, RenderedSitemap> sitemaps = Collections.emptyMap();
+
+	/**
+	 * Constructor sets default values.
+	 * 
+	 * @param baseUrl
+	 *            the URL the sitemap is served at, used to reference the shards from the index
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the base URL is {@code null}
+	 */
+	public SitemapRenderer(final String baseUrl) {
+		if (baseUrl == null) {
+			throw new IllegalArgumentException("Argument 'baseUrl' must not be null.");
+		}
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+	}
+
+	/**
+	 * Adds a URL to the next version of the sitemap, which is rendered by {@link #finish()}.
+	 */
+	@Override
+	public synchronized void add(final SitemapUrl url) {
+		pending.add(url);
+	}
+
+	/**
+	 * Renders the URLs added since the last update.
+	 */
+	@Override
+	public synchronized void finish() {
+		final List<SitemapUrl> urls = pending;
+		pending = new ArrayList<SitemapUrl>();
+		update(urls);
+	}
+
+	/**
+	 * Gets a rendered sitemap by its file name.
+	 * 
+	 * @param name
+	 *            the file name, e.g. {@code sitemap.xml}, {@code sitemap_index.xml} or {@code sitemap2.xml}
+	 * @return the sitemap or {@code null} if there is none of that name
+	 */
+	public RenderedSitemap get(final String name) {
+		return sitemaps.get(name);
+	}
+
+	/**
+	 * Get the base URL the sitemap is served at.
+	 * 
+	 * @return the value of baseUrl, ending with a slash.
+	 */
+	public String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/**
+	 * Get the date format used for the last modification dates.
+	 * 
+	 * @return the value of dateFormat.
+	 */
+	public W3CDateFormat getDateFormat() {
+		return encoder.getDateFormat();
+	}
+
+	/**
+	 * Gets the sitemap search engines are pointed to, the index if there is more than one shard.
+	 * 
+	 * @return the sitemap or {@code null} if there are no URLs
+	 */
+	public RenderedSitemap getRoot() {
+		final Map<String, RenderedSitemap> current = sitemaps;
+		return current.isEmpty() ? null : current.values().iterator().next();
+	}
+
+	/**
+	 * Get all rendered sitemaps, the root first.
+	 * 
+	 * @return the sitemaps by file name.
+	 */
+	public Map<String, RenderedSitemap> getSitemaps() {
+		return sitemaps;
+	}
+
+	/**
+	 * Renders a shard starting at the given URL until the end is reached or the shard is full.
+	 */
+	private RenderedSitemap render(final List<SitemapUrl> urls, final int start, final int end) {
+		buffer.reset();
+		buffer.write(StreamingSitemapWriter.HEADER, 0, StreamingSitemapWriter.HEADER.length);
+		int count = 0;
+		while (start + count < end) {
+			final int length = encoder.encode(urls.get(start + count));
+			if (count > 0 && buffer.size() + length + StreamingSitemapWriter.FOOTER.length > StreamingSitemapWriter.MAX_BYTES) {
+				break;
+			}
+			buffer.write(encoder.getBuffer(), 0, length);
+			count++;
+		}
+		buffer.write(StreamingSitemapWriter.FOOTER, 0, StreamingSitemapWriter.FOOTER.length);
+		return new RenderedSitemap(null, buffer.toByteArray(), System.currentTimeMillis(),
+				Collections.unmodifiableList(new ArrayList<SitemapUrl>(urls.subList(start, start + count))));
+	}
+
+	private RenderedSitemap renderIndex(final List<RenderedSitemap> named) {
+		buffer.reset();
+		try {
+			final SitemapIndexWriter writer = new SitemapIndexWriter(buffer, encoder.getDateFormat());
+			for (final RenderedSitemap shard : named) {
+				writer.add(baseUrl + shard.getName(), shard.getLastModified());
+			}
+			writer.close();
+		} catch (final IOException e) {
+			throw new IllegalStateException("Can not write to memory.", e);
+		}
+		return new RenderedSitemap(Sitemap.INDEX_FILE_NAME, buffer.toByteArray(), System.currentTimeMillis(),
+				Collections.<SitemapUrl> emptyList());
+	}
+
+	/**
+	 * Set the date format used for the last modification dates, it applies to shards rendered afterwards.
+	 * 
+	 * @param dateFormat
+	 *            new value of dateFormat.
+	 */
+	public synchronized void setDateFormat(final W3CDateFormat dateFormat) {
+		encoder.setDateFormat(dateFormat);
+	}
+
+	/**
+	 * Replaces the URLs of the sitemap, rendering only the shards whose URLs changed.
+	 * 
+	 * @param urls
+	 *            the URLs in the order they are listed in
+	 * @return the number of shards which were rendered
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the URLs are {@code null}
+	 */
+	public synchronized int update(final Collection<SitemapUrl> urls) {
+		if (urls == null) {
+			throw new IllegalArgumentException("Argument 'urls' must not be null.");
+		}
+
+		// The cached shards by their first URL, a shard is kept wherever its URLs appear again
+		final Map<SitemapUrl, RenderedSitemap> cached = new HashMap<SitemapUrl, RenderedSitemap>();
+		for (final RenderedSitemap shard : shards) {
+			cached.put(shard.getUrls().get(0), shard);
+		}
+
+		final List<SitemapUrl> list = new ArrayList<SitemapUrl>(urls);
+		final List<RenderedSitemap> rendered = new ArrayList<RenderedSitemap>();
+		int renderedCount = 0;
+		int start = 0;
+		while (start < list.size()) {
+			final RenderedSitemap shard = cached.get(list.get(start));
+			if (shard != null && start + shard.getUrls().size() <= list.size()
+					&& shard.getUrls().equals(list.subList(start, start + shard.getUrls().size()))) {
+				rendered.add(shard);
+				start += shard.getUrls().size();
+				continue;
+			}
+
+			// Stop where a cached shard starts, so that it can be kept
+			int end = Math.min(start + StreamingSitemapWriter.MAX_URLS, list.size());
+			for (int i = start + 1; i < end; i++) {
+				if (cached.containsKey(list.get(i))) {
+					end = i;
+					break;
+				}
+			}
+			final RenderedSitemap renderedShard = render(list, start, end);
+			rendered.add(renderedShard);
+			start += renderedShard.getUrls().size();
+			renderedCount++;
+		}
+
+		final List<RenderedSitemap> named = new ArrayList<RenderedSitemap>(rendered.size());
+		for (int i = 0; i < rendered.size(); i++) {
+			named.add(rendered.get(i).withName(rendered.size() == 1 ? Sitemap.FILE_NAME : "sitemap" + (i + 1) + ".xml"));
+		}
+		if (named.size() < 2) {
+			index = null;
+		} else if (index == null || renderedCount > 0 || !named.equals(shards)) {
+			index = renderIndex(named);
+		}
+		shards = named;
+
+		final Map<String, RenderedSitemap> current = new LinkedHashMap<String, RenderedSitemap>();
+		if (index != null) {
+			current.put(index.getName(), index);
+		}
+		for (final RenderedSitemap shard : named) {
+			current.put(shard.getName(), shard);
+		}
+		sitemaps = Collections.unmodifiableMap(current);
+		return renderedCount;
+	}
+
+	/**
+	 * Replaces the URLs of the sitemap with the pages linked from the menus of a site. The menus do not tell when a
+	 * page changed, so a page keeps the last modification time it had in the current sitemap and only new pages get
+	 * the current time.
+	 * 
+	 * @param model
+	 *            the DecorationModel to extract the menus from
+	 * @param changeFreq
+	 *            how frequently the pages are likely to change
+	 * @return the number of shards which were rendered
+	 * @throws IOException
+	 *             if the URLs can not be extracted
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if one of the given arguments is {@code null}
+	 */
+	public synchronized int update(final DecorationModel model, final ChangeFreq changeFreq) throws IOException {
+		final Map<String, SitemapUrl> previous = new HashMap<String, SitemapUrl>();
+		for (final RenderedSitemap shard : shards) {
+			for (final SitemapUrl url : shard.getUrls()) {
+				previous.put(url.getLocation(), url);
+			}
+		}
+
+		final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+		final NormalizingUrlSink sink = new NormalizingUrlSink(new CompactUrlSet(), new UrlSink() {
+			@Override
+			public void add(final SitemapUrl url) {
+				final SitemapUrl known = previous.get(url.getLocation());
+				urls.add(known == null ? url : new SitemapUrl(url.getLocation(), known.getLastModified(), url.getChangeFreq(), url
+						.getPriority(), url.getAlternates()));
+			}
+
+			@Override
+			public void finish() {
+			}
+		});
+		new Sitemap(null, null).generate(baseUrl, model, sink, changeFreq);
+		sink.finish();
+		return update(urls);
+	}
+
+}
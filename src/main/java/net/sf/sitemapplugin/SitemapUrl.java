@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+/**
+ * A single URL of a sitemap.
+ */
+public final class SitemapUrl {
+
+	private final Map<String, String> alternates;
+
+	private final ChangeFreq changeFreq;
+
+	private final long lastModified;
+
+	private final String location;
+
+	private final Double priority;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param location
+	 *            the absolute URL of the page
+	 * @param lastModified
+	 *            the last modification time in milliseconds or {@code 0L} if it is unknown
+	 * @param changeFreq
+	 *            how frequently the page is likely to change, may be {@code null}
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the location is {@code null}
+	 */
+	public SitemapUrl(final String location, final long lastModified, final ChangeFreq changeFreq) {
+		this(location, lastModified, changeFreq, Collections.<String, String> emptyMap());
+	}
+
+	/**
+	 * Constructor sets all values, including the translations of the page.
+	 * 
+	 * @param location
+	 *            the absolute URL of the page
+	 * @param lastModified
+	 *            the last modification time in milliseconds or {@code 0L} if it is unknown
+	 * @param changeFreq
+	 *            how frequently the page is likely to change, may be {@code null}
+	 * @param alternates
+	 *            the absolute URLs of the translations of the page by their hreflang code, e.g. {@code de} or
+	 *            {@code x-default}, including the page itself
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the location or the alternates are {@code null}
+	 */
+	public SitemapUrl(final String location, final long lastModified, final ChangeFreq changeFreq, final Map<String, String> alternates) {
+		this(location, lastModified, changeFreq, null, alternates);
+	}
+
+	/**
+	 * Constructor sets all values, including the priority and the translations of the page.
+	 * 
+	 * @param location
+	 *            the absolute URL of the page
+	 * @param lastModified
+	 *            the last modification time in milliseconds or {@code 0L} if it is unknown
+	 * @param changeFreq
+	 *            how frequently the page is likely to change, may be {@code null}
+	 * @param priority
+	 *            the priority of the page relative to the other pages of the site from 0.0 to 1.0, may be {@code null}
+	 * @param alternates
+	 *            the absolute URLs of the translations of the page by their hreflang code, e.g. {@code de} or
+	 *            {@code x-default}, including the page itself
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the location or the alternates are {@code null}
+	 */
+	public SitemapUrl(final String location, final long lastModified, final ChangeFreq changeFreq, final Double priority,
+			final Map<String, String> alternates) {
+		if (location == null) {
+			throw new IllegalArgumentException("Argument 'location' must not be null.");
+		}
+		if (alternates == null) {
+			throw new IllegalArgumentException("Argument 'alternates' must not be null.");
+		}
+		this.location = location;
+		this.lastModified = lastModified;
+		this.changeFreq = changeFreq;
+		this.priority = priority;
+		this.alternates = alternates.isEmpty() ? Collections.<String, String> emptyMap() : Collections
+				.unmodifiableMap(new LinkedHashMap<String, String>(alternates));
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof SitemapUrl)) {
+			return false;
+		}
+		final SitemapUrl other = (SitemapUrl) obj;
+		return location.equals(other.location) && lastModified == other.lastModified && changeFreq == other.changeFreq
+				&& (priority == null ? other.priority == null : priority.equals(other.priority)) && alternates.equals(other.alternates);
+	}
+
+	/**
+	 * Get the translations of the page.
+	 * 
+	 * @return the absolute URLs by hreflang code, empty if the page has no translations.
+	 */
+	public Map<String, String> getAlternates() {
+		return alternates;
+	}
+
+	/**
+	 * Get how frequently the page is likely to change.
+	 * 
+	 * @return the change frequency or {@code null} if it is not specified.
+	 */
+	public ChangeFreq getChangeFreq() {
+		return changeFreq;
+	}
+
+	/**
+	 * Get the last modification time of the page.
+	 * 
+	 * @return the time in milliseconds or {@code 0L} if it is unknown.
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Get the absolute URL of the page.
+	 * 
+	 * @return the value of location.
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * Get the priority of the page relative to the other pages of the site.
+	 * 
+	 * @return the priority from 0.0 to 1.0 or {@code null} if it is not specified.
+	 */
+	public Double getPriority() {
+		return priority;
+	}
+
+	@Override
+	public int hashCode() {
+		return location.hashCode() * 31 + (int) (lastModified ^ lastModified >>> 32);
+	}
+
+	@Override
+	public String toString() {
+		return location;
+	}
+
+}
@@ -0,0 +1,415 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.codehaus.plexus.util.IOUtil;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+/**
+ * Passes the URLs on sorted by location, so that the sitemap does not depend on the order of the menus.
+ * <p>
+ * The URLs are collected in memory until their estimated size exceeds the buffer size. Then they are sorted and spilled
+ * as a run to a file of the work directory. When all URLs have been added the runs are merged, at most
+ * {@link #MAX_MERGE_WIDTH} at a time, so that URL sets larger than the heap can be sorted. URLs with the same location
+ * keep the order they were added in. This class is not thread-safe.
+ * </p>
+ */
+final class SortingUrlSink implements UrlSink {
+
+	/**
+	 * Reads the URLs of a sorted run one after another.
+	 */
+	private static final class RunReader {
+
+		private SitemapUrl current;
+
+		private final DataInputStream in;
+
+		private final int index;
+
+		RunReader(final File file, final int index) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE));
+			this.index = index;
+		}
+
+		void close() {
+			IOUtil.close(in);
+		}
+
+		/**
+		 * Reads the next URL of the run.
+		 * 
+		 * @return {@code false} if the run is exhausted
+		 */
+		boolean next() throws IOException {
+			final int length;
+			try {
+				length = in.readInt();
+			} catch (final EOFException e) {
+				current = null;
+				return false;
+			}
+			final String location = readString(in, length);
+			final long lastModified = in.readLong();
+			final int changeFreq = in.readByte();
+			final Double priority = in.readBoolean() ? Double.valueOf(in.readDouble()) : null;
+			final int alternateCount = in.readInt();
+			final Map<String, String> alternates = new LinkedHashMap<String, String>();
+			for (int i = 0; i < alternateCount; i++) {
+				alternates.put(readString(in, in.readInt()), readString(in, in.readInt()));
+			}
+			current = new SitemapUrl(location, lastModified, changeFreq < 0 ? null : ChangeFreq.values()[changeFreq], priority,
+					alternates);
+			return true;
+		}
+
+	}
+
+	/**
+	 * Writes sorted URLs to a run.
+	 */
+	private static final class RunWriter implements UrlSink {
+
+		private final DataOutputStream out;
+
+		RunWriter(final File file) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+		}
+
+		@Override
+		public void add(final SitemapUrl url) throws IOException {
+			writeString(out, url.getLocation());
+			out.writeLong(url.getLastModified());
+			out.writeByte(url.getChangeFreq() == null ? -1 : url.getChangeFreq().ordinal());
+			out.writeBoolean(url.getPriority() != null);
+			if (url.getPriority() != null) {
+				out.writeDouble(url.getPriority().doubleValue());
+			}
+			out.writeInt(url.getAlternates().size());
+			for (final Map.Entry<String, String> alternate : url.getAlternates().entrySet()) {
+				writeString(out, alternate.getKey());
+				writeString(out, alternate.getValue());
+			}
+		}
+
+		void close() {
+			IOUtil.close(out);
+		}
+
+		@Override
+		public void finish() throws IOException {
+			out.close();
+		}
+
+	}
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Maximum number of runs merged at once, which bounds the number of open files and read buffers.
+	 */
+	static final int MAX_MERGE_WIDTH = 64;
+
+	/**
+	 * Estimated heap size of a URL besides the characters of its strings, i.e. the {@code SitemapUrl} and the
+	 * {@code String} objects with their arrays and the reference in the buffer.
+	 */
+	private static final int URL_OVERHEAD = 96;
+
+	private static final Comparator<SitemapUrl> BY_LOCATION = new Comparator<SitemapUrl>() {
+		@Override
+		public int compare(final SitemapUrl o1, final SitemapUrl o2) {
+			return o1.getLocation().compareTo(o2.getLocation());
+		}
+	};
+
+	/**
+	 * Estimates the heap size of a URL.
+	 */
+	private static long estimateSize(final SitemapUrl url) {
+		long size = URL_OVERHEAD + url.getLocation().length() * 2L;
+		for (final Map.Entry<String, String> alternate : url.getAlternates().entrySet()) {
+			size += URL_OVERHEAD + (alternate.getKey().length() + alternate.getValue().length()) * 2L;
+		}
+		return size;
+	}
+
+	private static String readString(final DataInputStream in, final int length) throws IOException {
+		final byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StreamingSitemapWriter.UTF_8);
+	}
+
+	private static void writeString(final DataOutputStream out, final String value) throws IOException {
+		final byte[] bytes = value.getBytes(StreamingSitemapWriter.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private final List<SitemapUrl> buffer = new ArrayList<SitemapUrl>();
+
+	private long bufferedSize;
+
+	private final long bufferSize;
+
+	private final UrlSink delegate;
+
+	private int runCount;
+
+	private final List<File> runs = new ArrayList<File>();
+
+	private long time;
+
+	private int urlCount;
+
+	private final File workDirectory;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param workDirectory
+	 *            the directory to spill the runs to, which is created if it does not exist
+	 * @param bufferSize
+	 *            the estimated heap size in bytes the URLs may take before they are spilled
+	 * @param delegate
+	 *            the sink receiving the sorted URLs
+	 */
+	SortingUrlSink(final File workDirectory, final long bufferSize, final UrlSink delegate) {
+		if (workDirectory == null) {
+			throw new IllegalArgumentException("Argument 'workDirectory' must not be null.");
+		}
+		if (bufferSize <= 0L) {
+			throw new IllegalArgumentException("Argument 'bufferSize' must be positive.");
+		}
+		this.workDirectory = workDirectory;
+		this.bufferSize = bufferSize;
+		this.delegate = delegate;
+	}
+
+	/**
+	 * Abandons the sorting after a failure: discards the buffered URLs and deletes the runs spilled so far, so that no
+	 * files are left in the work directory. Does nothing once {@link #finish()} was called, so it can be called in a
+	 * {@code finally} block.
+	 */
+	void abort() {
+		buffer.clear();
+		bufferedSize = 0L;
+		deleteRuns();
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		buffer.add(url);
+		urlCount++;
+		bufferedSize += estimateSize(url);
+		if (bufferedSize > bufferSize) {
+			final long start = System.nanoTime();
+			spill();
+			time += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Creates the file of a new run.
+	 */
+	private File createRun() throws IOException {
+		if (!workDirectory.isDirectory() && !workDirectory.mkdirs()) {
+			throw new IOException("Can not create '" + workDirectory + "'.");
+		}
+		return new File(workDirectory, "run-" + runCount++ + ".bin");
+	}
+
+	private void deleteRuns() {
+		for (final File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+	}
+
+	@Override
+	public void finish() throws IOException {
+		try {
+			long start = System.nanoTime();
+			if (runs.isEmpty()) {
+				Collections.sort(buffer, BY_LOCATION);
+				time += System.nanoTime() - start;
+				for (final SitemapUrl url : buffer) {
+					delegate.add(url);
+				}
+				buffer.clear();
+				bufferedSize = 0L;
+			} else {
+				if (!buffer.isEmpty()) {
+					spill();
+				}
+				while (runs.size() > MAX_MERGE_WIDTH) {
+					mergePass();
+				}
+				time += System.nanoTime() - start;
+				start = System.nanoTime();
+				final long delegateTime = merge(new ArrayList<File>(runs), delegate);
+				runs.clear();
+				time += System.nanoTime() - start - delegateTime;
+			}
+		} finally {
+			deleteRuns();
+		}
+		delegate.finish();
+	}
+
+	/**
+	 * Get the number of runs spilled to the work directory, including those of intermediate merges.
+	 * 
+	 * @return the value of runCount.
+	 */
+	int getRunCount() {
+		return runCount;
+	}
+
+	/**
+	 * Get the time spent sorting, spilling and merging, without the time of the delegate.
+	 * 
+	 * @return the time in nanoseconds.
+	 */
+	long getTime() {
+		return time;
+	}
+
+	/**
+	 * Get the number of added URLs.
+	 * 
+	 * @return the value of urlCount.
+	 */
+	int getUrlCount() {
+		return urlCount;
+	}
+
+	/**
+	 * Merges sorted runs into a sink and deletes them. URLs with the same location are taken from the older run first.
+	 * 
+	 * @param files
+	 *            the runs, older runs first
+	 * @param target
+	 *            the sink receiving the merged URLs
+	 * @return the time spent in the target in nanoseconds
+	 */
+	private long merge(final List<File> files, final UrlSink target) throws IOException {
+		final PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(files.size(), new Comparator<RunReader>() {
+			@Override
+			public int compare(final RunReader o1, final RunReader o2) {
+				final int result = BY_LOCATION.compare(o1.current, o2.current);
+				return result != 0 ? result : o1.index - o2.index;
+			}
+		});
+		final List<RunReader> readers = new ArrayList<RunReader>(files.size());
+		try {
+			for (int i = 0; i < files.size(); i++) {
+				final RunReader reader = new RunReader(files.get(i), i);
+				readers.add(reader);
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			long targetTime = 0L;
+			while (!queue.isEmpty()) {
+				final RunReader reader = queue.poll();
+				final long start = System.nanoTime();
+				target.add(reader.current);
+				targetTime += System.nanoTime() - start;
+				if (reader.next()) {
+					queue.add(reader);
+				}
+			}
+			return targetTime;
+		} finally {
+			for (final RunReader reader : readers) {
+				reader.close();
+			}
+			for (final File file : files) {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * Merges every {@link #MAX_MERGE_WIDTH} consecutive runs into one, keeping the runs in the order they were written.
+	 */
+	private void mergePass() throws IOException {
+		final List<File> merged = new ArrayList<File>((runs.size() + MAX_MERGE_WIDTH - 1) / MAX_MERGE_WIDTH);
+		try {
+			while (!runs.isEmpty()) {
+				final List<File> group = runs.subList(0, Math.min(MAX_MERGE_WIDTH, runs.size()));
+				final List<File> files = new ArrayList<File>(group);
+				group.clear();
+				if (files.size() == 1) {
+					merged.add(files.get(0));
+					continue;
+				}
+				final File run = createRun();
+				merged.add(run);
+				final RunWriter writer = new RunWriter(run);
+				try {
+					merge(files, writer);
+					writer.finish();
+				} finally {
+					writer.close();
+				}
+			}
+		} finally {
+			// Also on failure, so that the merged runs are deleted
+			runs.addAll(merged);
+		}
+	}
+
+	/**
+	 * Sorts the buffered URLs and writes them to a new run.
+	 */
+	private void spill() throws IOException {
+		Collections.sort(buffer, BY_LOCATION);
+		final File run = createRun();
+		runs.add(run);
+		final RunWriter writer = new RunWriter(run);
+		try {
+			for (final SitemapUrl url : buffer) {
+				writer.add(url);
+			}
+			writer.finish();
+		} finally {
+			writer.close();
+		}
+		buffer.clear();
+		bufferedSize = 0L;
+	}
+
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the modification times of the source documents of a site, keyed by the path of the page they are rendered
+ * to.
+ * <p>
+ * The index is built with a single walk over the site directories, following the layout of Doxia: documents are
+ * placed in a directory named after their format (e.g. {@code apt/guide.apt} is rendered to {@code guide.html}),
+ * resources are copied as they are and every other directory holds the documents of a locale.
+ * </p>
+ */
+final class SourceTimestampIndex {
+	/**
+	 * Directories whose documents are rendered to HTML by Doxia.
+	 */
+	private static final Set<String> FORMATS = new HashSet<String>(Arrays.asList("apt", "confluence", "docbook", "fml", "markdown",
+			"twiki", "xdoc", "xhtml"));
+
+	private static final String RESOURCES = "resources";
+
+	private static final String VELOCITY_EXTENSION = ".vm";
+
+	/**
+	 * Builds the index of the given site directories. Directories which do not exist are ignored; if the same page is
+	 * found more than once the latest modification time wins.
+	 * 
+	 * @param siteDirectories
+	 *            the directories containing the site sources
+	 * @return the index
+	 */
+	static SourceTimestampIndex build(final File... siteDirectories) {
+		final SourceTimestampIndex index = new SourceTimestampIndex();
+		for (final File siteDirectory : siteDirectories) {
+			if (siteDirectory != null) {
+				index.addSiteDirectory(siteDirectory, "");
+			}
+		}
+		return index;
+	}
+
+	private static int indexOfAny(final String value, final char first, final char second) {
+		final int a = value.indexOf(first);
+		final int b = value.indexOf(second);
+		return a < 0 ? b : b < 0 ? a : Math.min(a, b);
+	}
+
+	/**
+	 * Converts a menu link to the key of a page, that is its path relative to the site root.
+	 * 
+	 * @return the key or {@code null} if the link points outside of the site
+	 */
+	private static String toKey(final String href) {
+		if (href == null || href.indexOf("://") >= 0 || href.startsWith("../")) {
+			return null;
+		}
+
+		String path = href;
+		final int end = indexOfAny(path, '#', '?');
+		if (end >= 0) {
+			path = path.substring(0, end);
+		}
+		while (path.startsWith("./") || path.startsWith("/")) {
+			path = path.substring(path.charAt(0) == '/' ? 1 : 2);
+		}
+		if (path.length() == 0 || path.endsWith("/")) {
+			path += "index.html";
+		}
+		return path;
+	}
+
+	private static String toPageName(final String fileName) {
+		String name = fileName;
+		if (name.endsWith(VELOCITY_EXTENSION)) {
+			name = name.substring(0, name.length() - VELOCITY_EXTENSION.length());
+		}
+		final int dot = name.lastIndexOf('.');
+		return (dot > 0 ? name.substring(0, dot) : name) + ".html";
+	}
+
+	private final Map<String, Long> timestamps = new HashMap<String, Long>();
+
+	private void add(final String key, final long lastModified) {
+		final Long previous = timestamps.get(key);
+		if (previous == null || previous.longValue() < lastModified) {
+			timestamps.put(key, Long.valueOf(lastModified));
+		}
+	}
+
+	private void addDocuments(final File directory, final String prefix, final boolean resources) {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (final File file : files) {
+			if (file.isDirectory()) {
+				addDocuments(file, prefix + file.getName() + '/', resources);
+			} else if (!resources) {
+				add(prefix + toPageName(file.getName()), file.lastModified());
+			} else if (file.getName().endsWith(".html") || file.getName().endsWith(".htm")) {
+				add(prefix + file.getName(), file.lastModified());
+			}
+		}
+	}
+
+	private void addSiteDirectory(final File siteDirectory, final String language) {
+		final File[] directories = siteDirectory.listFiles();
+		if (directories == null) {
+			return;
+		}
+
+		for (final File directory : directories) {
+			if (!directory.isDirectory()) {
+				continue;
+			}
+			final String name = directory.getName();
+			if (FORMATS.contains(name)) {
+				addDocuments(directory, language, false);
+			} else if (RESOURCES.equals(name)) {
+				addDocuments(directory, language, true);
+			} else if (language.length() == 0) {
+				addSiteDirectory(directory, name + '/');
+			}
+		}
+	}
+
+	/**
+	 * Gets the modification time of the source document of a page.
+	 * 
+	 * @param language
+	 *            the language of a locale specific site, or {@code null} for the default locale
+	 * @param href
+	 *            the link to the page as found in the site descriptor
+	 * @return the modification time or {@code 0L} if the source document is unknown
+	 */
+	long getLastModified(final String language, final String href) {
+		final String key = toKey(href);
+		if (key == null) {
+			return 0L;
+		}
+
+		Long lastModified = null;
+		if (language != null) {
+			lastModified = timestamps.get(language + '/' + key);
+		}
+		if (lastModified == null) {
+			lastModified = timestamps.get(key);
+		}
+		return lastModified == null ? 0L : lastModified.longValue();
+	}
+
+	/**
+	 * Get the modification times of the source documents.
+	 * 
+	 * @return the modification times in milliseconds by the path of the page, not modifiable.
+	 */
+	Map<String, Long> getTimestamps() {
+		return Collections.unmodifiableMap(timestamps);
+	}
+
+}
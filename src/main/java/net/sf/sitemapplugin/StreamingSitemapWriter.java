@@ -0,0 +1,764 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.plexus.util.IOUtil;
+import org.xml.sax.SAXException;
+
+import com.redfin.sitemapgenerator.SitemapValidator;
+import com.redfin.sitemapgenerator.W3CDateFormat;
+
+/**
+ * Writes the URLs of a sitemap straight to disk.
+ * <p>
+ * A shard is filled until it reaches the limits of the Sitemap protocol, 50,000 URLs or 10 MB, then it is completed and
+ * the next one is started, so only a single URL is held in memory at any time. A sitemap which fits into one shard is
+ * named {@code <prefix>.xml}, otherwise the shards are numbered {@code <prefix>1.xml, <prefix>2.xml, ...} and listed in
+ * a sitemap index, following the naming of {@code WebSitemapGenerator}.
+ * </p>
+ * <p>
+ * If compression is switched on every shard is gzipped to {@code <name>.xml.gz} as soon as it is complete. Completed
+ * shards are compressed on a thread pool while the next shard is written, and the index references the compressed
+ * files.
+ * </p>
+ * <p>
+ * Every file is written to a temporary file first and hashed while it is written. A file whose content did not change
+ * since the last run is left untouched, see {@link FileReplacer}, and the index lists the modification time of every
+ * file, so only changed files have to be deployed again.
+ * </p>
+ */
+public final class StreamingSitemapWriter implements UrlSink {
+
+	/**
+	 * Maximum number of URLs of a single sitemap file.
+	 */
+	static final int MAX_URLS = 50000;
+
+	/**
+	 * Maximum size of a single sitemap file in bytes.
+	 */
+	static final int MAX_BYTES = 10 * 1024 * 1024;
+
+	/**
+	 * Maximum length of a URL, it must be less than 2,048 characters.
+	 */
+	static final int MAX_URL_LENGTH = 2047;
+
+	/**
+	 * Compression level which switches compression off.
+	 */
+	public static final int NO_COMPRESSION = -1;
+
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	static final byte[] FOOTER = "</urlset>".getBytes(UTF_8);
+
+	static final byte[] HEADER = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+			+ "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\" xmlns:xhtml=\"http://www.w3.org/1999/xhtml\" >\n")
+			.getBytes(UTF_8);
+
+	/**
+	 * Appends the given text to the builder, escaping the characters which are not allowed in XML content.
+	 * 
+	 * @param builder
+	 *            the builder to append to
+	 * @param text
+	 *            the text to escape
+	 */
+	static void appendEscaped(final StringBuilder builder, final String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '&':
+				builder.append("&amp;");
+				break;
+			case '<':
+				builder.append("&lt;");
+				break;
+			case '>':
+				builder.append("&gt;");
+				break;
+			case '"':
+				builder.append("&quot;");
+				break;
+			case '\'':
+				builder.append("&apos;");
+				break;
+			default:
+				builder.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Checks a single URL against the rules of the Sitemap protocol.
+	 * 
+	 * @return the violated rule or {@code null} if the URL is valid
+	 */
+	private static String check(final String location, final String origin) {
+		if (location.length() > MAX_URL_LENGTH) {
+			return "URL is longer than " + MAX_URL_LENGTH + " characters";
+		}
+		final String locationOrigin = origin(location);
+		if (locationOrigin == null) {
+			return "URL is not an absolute HTTP URL";
+		}
+		if (origin != null && !origin.equals(locationOrigin)) {
+			return "URL is not located on the host of the sitemap " + origin;
+		}
+		return checkCharacters(location);
+	}
+
+	/**
+	 * Checks that a text only contains characters which can be represented in XML 1.0.
+	 * 
+	 * @return the violated rule or {@code null} if the text is valid
+	 */
+	private static String checkCharacters(final String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+				i++;
+			} else if (c < 0x20 && c != '\t' && c != '\n' && c != '\r' || Character.isSurrogate(c) || c == 0xfffe || c == 0xffff) {
+				return "character U+" + Integer.toHexString(0x10000 | c).substring(1).toUpperCase(Locale.ENGLISH)
+						+ " can not be represented in XML";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Compresses a file with gzip and deletes the uncompressed file. The output does not depend on the time, so equal
+	 * files compress to equal bytes.
+	 * 
+	 * @param file
+	 *            the file to compress
+	 * @param compressed
+	 *            the file to write the compressed content to
+	 * @param level
+	 *            the compression level from 0 to 9
+	 * @return the hash of the compressed content, see {@link FileReplacer#createDigest()}
+	 * @throws IOException
+	 *             if the file can not be compressed
+	 */
+	static byte[] gzip(final File file, final File compressed, final int level) throws IOException {
+		final MessageDigest digest = FileReplacer.createDigest();
+		final InputStream in = new FileInputStream(file);
+		try {
+			final OutputStream out = new GZIPOutputStream(new DigestOutputStream(new FileOutputStream(compressed), digest), 64 * 1024) {
+				{
+					def.setLevel(level);
+				}
+			};
+			try {
+				IOUtil.copy(in, out);
+				out.close();
+			} finally {
+				IOUtil.close(out);
+			}
+		} finally {
+			IOUtil.close(in);
+		}
+		if (!file.delete()) {
+			throw new IOException("Can not delete '" + file + "'.");
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Gets the scheme and authority of a URL in lower case, e.g. {@code http://example.org/}.
+	 * 
+	 * @return the origin or {@code null} if the URL is not an absolute HTTP URL
+	 */
+	static String origin(final String url) {
+		final String lowerCase = url.toLowerCase(Locale.ENGLISH);
+		if (!lowerCase.startsWith("http://") && !lowerCase.startsWith("https://")) {
+			return null;
+		}
+		final int slash = lowerCase.indexOf('/', lowerCase.indexOf("://") + 3);
+		return slash < 0 ? lowerCase + '/' : lowerCase.substring(0, slash + 1);
+	}
+
+	static void validate(final File file, final boolean index) throws IOException {
+		try {
+			if (index) {
+				SitemapValidator.validateSitemapIndex(file);
+			} else {
+				SitemapValidator.validateWebSitemap(file);
+			}
+		} catch (final SAXException e) {
+			throw new IOException("Sitemap '" + file + "' is not valid: " + e.getMessage(), e);
+		}
+	}
+
+	private final String baseUrl;
+
+	private final File directory;
+
+	private final String fileNamePrefix;
+
+	private File indexFile;
+
+	private boolean validate;
+
+	private boolean streamingValidation;
+
+	private final String origin;
+
+	private int compressionLevel = NO_COMPRESSION;
+
+	private int compressionThreads = Runtime.getRuntime().availableProcessors();
+
+	private ExecutorService compressor;
+
+	private final List<Future<File>> compressions = new ArrayList<Future<File>>();
+
+	private final MessageDigest digest = FileReplacer.createDigest();
+
+	private final AtomicInteger unchangedFiles = new AtomicInteger();
+
+	private final List<File> files = new ArrayList<File>();
+
+	private final List<File> deletedFiles = new ArrayList<File>();
+
+	private final SitemapEntryEncoder encoder = new SitemapEntryEncoder();
+
+	private OutputStream out;
+
+	private int urlsInShard;
+
+	private long bytesInShard;
+
+	private boolean alternatesInShard;
+
+	private int urlCount;
+
+	private long fileTime;
+
+	private boolean finished;
+
+	/**
+	 * Constructor sets default values.
+	 * 
+	 * @param baseUrl
+	 *            the URL the sitemap files are published at, used to reference the shards from the index
+	 * @param directory
+	 *            the directory to write the files to
+	 * @param fileNamePrefix
+	 *            the prefix of the file names, e.g. {@code sitemap}
+	 */
+	public StreamingSitemapWriter(final String baseUrl, final File directory, final String fileNamePrefix) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+		this.directory = directory;
+		this.fileNamePrefix = fileNamePrefix;
+		this.origin = origin(this.baseUrl);
+	}
+
+	/**
+	 * Abandons the sitemap after a failure: stops the compression of the shards, closes the current shard and deletes
+	 * the temporary shards and index, so that neither threads nor partial files are left behind. The files already moved into
+	 * place are kept. Does nothing once {@link #finish()} completed, so it can be called in a {@code finally} block.
+	 */
+	public void abort() {
+		if (finished) {
+			return;
+		}
+		if (compressor != null) {
+			compressor.shutdownNow();
+			try {
+				// A running compression must not write its file after the temporary files were deleted
+				compressor.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			compressor = null;
+		}
+		compressions.clear();
+		IOUtil.close(out);
+		out = null;
+		final String[] names = directory.list();
+		if (names != null) {
+			for (final String name : names) {
+				if (name.endsWith(FileReplacer.TEMP_EXTENSION)
+						&& isShardName(name.substring(0, name.length() - FileReplacer.TEMP_EXTENSION.length()))) {
+					new File(directory, name).delete();
+				}
+			}
+		}
+		if (indexFile != null) {
+			FileReplacer.tempFile(indexFile).delete();
+		}
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		check(url);
+
+		final int length = encoder.encode(url);
+		if (streamingValidation && HEADER.length + length + FOOTER.length > MAX_BYTES) {
+			throw new InvalidSitemapUrlException(url.getLocation(), "entry does not fit into a sitemap of " + MAX_BYTES + " bytes");
+		}
+
+		if (out != null && (urlsInShard == MAX_URLS || bytesInShard + length + FOOTER.length > MAX_BYTES)) {
+			final long start = System.nanoTime();
+			completeShard(false);
+			fileTime += System.nanoTime() - start;
+		}
+		if (out == null) {
+			final long start = System.nanoTime();
+			openShard();
+			fileTime += System.nanoTime() - start;
+		}
+		out.write(encoder.getBuffer(), 0, length);
+		alternatesInShard |= !url.getAlternates().isEmpty();
+		bytesInShard += length;
+		urlsInShard++;
+		urlCount++;
+	}
+
+	/**
+	 * Checks a URL the way {@link #add(SitemapUrl)} does: it must be located on the host of the sitemap and, with
+	 * streaming validation, follow the rules of the Sitemap protocol. Only the size of the entry is checked when it is
+	 * written.
+	 * 
+	 * @param url
+	 *            the URL to check
+	 * @throws InvalidSitemapUrlException
+	 *             if the URL can not be written to the sitemap
+	 */
+	void check(final SitemapUrl url) throws InvalidSitemapUrlException {
+		if (streamingValidation) {
+			checkUrl(url);
+		} else if (origin != null && !url.getLocation().regionMatches(true, 0, origin, 0, origin.length())) {
+			// The protocol only allows URLs on the host of the sitemap, which is always checked
+			throw new InvalidSitemapUrlException(url.getLocation(), "URL is not located on the host of the sitemap " + origin);
+		}
+	}
+
+	private void checkUrl(final SitemapUrl url) throws InvalidSitemapUrlException {
+		String reason = check(url.getLocation(), origin);
+		final Double priority = url.getPriority();
+		if (reason == null && priority != null && !(priority.doubleValue() >= 0.0 && priority.doubleValue() <= 1.0)) {
+			reason = "priority " + priority + " is not between 0.0 and 1.0";
+		}
+		if (reason == null) {
+			for (final Map.Entry<String, String> alternate : url.getAlternates().entrySet()) {
+				// Translations may be located on other hosts
+				final String alternateReason = check(alternate.getValue(), null);
+				if (alternateReason != null) {
+					reason = "alternate '" + alternate.getValue() + "': " + alternateReason;
+					break;
+				}
+				if (checkCharacters(alternate.getKey()) != null) {
+					reason = "hreflang '" + alternate.getKey() + "': " + checkCharacters(alternate.getKey());
+					break;
+				}
+			}
+		}
+		if (reason != null) {
+			throw new InvalidSitemapUrlException(url.getLocation(), reason);
+		}
+	}
+
+	private void closeShard() throws IOException {
+		try {
+			out.write(FOOTER);
+			out.close();
+		} finally {
+			IOUtil.close(out);
+			out = null;
+		}
+		// The XML schema of the Sitemap protocol does not know the xhtml:link element
+		if (validate && !alternatesInShard) {
+			validate(files.get(files.size() - 1), false);
+		}
+	}
+
+	/**
+	 * Closes the current shard and moves it into place, the last shard is compressed on the current thread.
+	 * 
+	 * @param last
+	 *            whether no further shard follows
+	 */
+	private void completeShard(final boolean last) throws IOException {
+		closeShard();
+		final int index = files.size() - 1;
+		final File temp = files.get(index);
+		final File target = new File(directory, fileNamePrefix + (last && index == 0 ? "" : String.valueOf(index + 1)) + ".xml");
+		if (compressionLevel == NO_COMPRESSION) {
+			files.set(index, replace(temp, digest.digest(), target));
+		} else if (last) {
+			files.set(index, compress(temp, target));
+		} else {
+			compressInBackground(temp, target);
+		}
+	}
+
+	/**
+	 * Compresses a shard and moves it into place.
+	 * 
+	 * @return the compressed file
+	 */
+	private File compress(final File temp, final File target) throws IOException {
+		final File compressed = new File(target.getPath() + ".gz");
+		final File compressedTemp = FileReplacer.tempFile(compressed);
+		return replace(compressedTemp, gzip(temp, compressedTemp, compressionLevel), compressed);
+	}
+
+	private void compressInBackground(final File temp, final File target) {
+		if (compressor == null) {
+			compressor = Executors.newFixedThreadPool(compressionThreads);
+		}
+		compressions.add(compressor.submit(new Callable<File>() {
+			@Override
+			public File call() throws IOException {
+				return compress(temp, target);
+			}
+		}));
+	}
+
+	private void delete(final File file) {
+		if (file.delete()) {
+			deletedFiles.add(file);
+		}
+	}
+
+	/**
+	 * Deletes the shards and the index left over from a previous run which wrote more shards, or compressed them
+	 * differently, so that they are neither deployed nor read as part of the sitemap.
+	 */
+	private void deleteStaleFiles() {
+		final Set<String> written = new HashSet<String>();
+		for (final File file : files) {
+			written.add(file.getName());
+		}
+		final String[] names = directory.list();
+		if (names != null) {
+			for (final String name : names) {
+				if (isShardName(name) && !written.contains(name)) {
+					delete(new File(directory, name));
+				}
+			}
+		}
+		if (files.size() <= 1 && indexFile.isFile()) {
+			delete(indexFile);
+		}
+	}
+
+	/**
+	 * Completes the last shard and writes the sitemap index if there is more than one shard. Shards and an index left
+	 * over from a previous run are deleted if the index file is set, as the writer then owns all files of its prefix.
+	 */
+	@Override
+	public void finish() throws IOException {
+		final long start = System.nanoTime();
+		try {
+			finishFiles();
+			finished = true;
+		} finally {
+			fileTime += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Waits for the compression of all shards but the last one.
+	 */
+	private void finishCompression() throws IOException {
+		try {
+			for (int i = 0; i < compressions.size(); i++) {
+				files.set(i, compressions.get(i).get());
+			}
+		} catch (final ExecutionException e) {
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause().getMessage(), e.getCause());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while compressing the sitemap.");
+		} finally {
+			if (compressor != null) {
+				compressor.shutdownNow();
+				compressor = null;
+			}
+			compressions.clear();
+		}
+	}
+
+	private void finishFiles() throws IOException {
+		if (out != null) {
+			completeShard(true);
+		}
+		if (compressionLevel != NO_COMPRESSION && !files.isEmpty()) {
+			finishCompression();
+		}
+
+		if (files.size() > 1 && indexFile != null) {
+			final File temp = FileReplacer.tempFile(indexFile);
+			final SitemapIndexWriter index = new SitemapIndexWriter(temp, encoder.getDateFormat());
+			try {
+				for (final File file : files) {
+					index.add(baseUrl + file.getName(), file.lastModified());
+				}
+			} finally {
+				index.close();
+			}
+			if (validate) {
+				validate(temp, true);
+			}
+			replace(temp, null, indexFile);
+		}
+		if (indexFile != null) {
+			deleteStaleFiles();
+		}
+	}
+
+	/**
+	 * Get the compression level of the shards.
+	 * 
+	 * @return the level from 0 to 9, or {@link #NO_COMPRESSION}.
+	 */
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * Get the date format used for the last modification dates.
+	 * 
+	 * @return the value of dateFormat.
+	 */
+	public W3CDateFormat getDateFormat() {
+		return encoder.getDateFormat();
+	}
+
+	/**
+	 * Get the files left over from a previous run which were deleted.
+	 * 
+	 * @return the deleted shards and index, complete after {@link #finish()} was called.
+	 */
+	public List<File> getDeletedFiles() {
+		return Collections.unmodifiableList(deletedFiles);
+	}
+
+	/**
+	 * Get the written sitemap files, not including the index. Files which did not change are listed as well.
+	 * 
+	 * @return the written files, complete after {@link #finish()} was called.
+	 */
+	public List<File> getFiles() {
+		return Collections.unmodifiableList(files);
+	}
+
+	/**
+	 * Get the time spent on opening, completing, compressing and validating files, which excludes the time of
+	 * encoding the URLs.
+	 * 
+	 * @return the time in nanoseconds.
+	 */
+	public long getFileTime() {
+		return fileTime;
+	}
+
+	/**
+	 * Get the file the sitemap index is written to if there is more than one shard.
+	 * 
+	 * @return the value of indexFile, may be {@code null}.
+	 */
+	public File getIndexFile() {
+		return indexFile;
+	}
+
+	/**
+	 * Get the number of files, including the index, which were left untouched because their content did not change.
+	 * 
+	 * @return the value of unchangedFiles.
+	 */
+	public int getUnchangedFileCount() {
+		return unchangedFiles.get();
+	}
+
+	/**
+	 * Get the number of written URLs.
+	 * 
+	 * @return the number of URLs in all shards.
+	 */
+	public int getUrlCount() {
+		return urlCount;
+	}
+
+	/**
+	 * Checks whether a file name is one of the shard names of this writer, e.g. {@code sitemap.xml} or
+	 * {@code sitemap12.xml.gz}.
+	 */
+	private boolean isShardName(final String name) {
+		if (!name.startsWith(fileNamePrefix)) {
+			return false;
+		}
+		int end = name.length();
+		if (name.endsWith(".xml.gz")) {
+			end -= 7;
+		} else if (name.endsWith(".xml")) {
+			end -= 4;
+		} else {
+			return false;
+		}
+		for (int i = fileNamePrefix.length(); i < end; i++) {
+			if (!Character.isDigit(name.charAt(i))) {
+				return false;
+			}
+		}
+		return end >= fileNamePrefix.length();
+	}
+
+	/**
+	 * Get whether every URL is checked against the rules of the Sitemap protocol before it is written.
+	 * 
+	 * @return the value of streamingValidation.
+	 */
+	public boolean isStreamingValidation() {
+		return streamingValidation;
+	}
+
+	/**
+	 * Get whether every completed file is validated against the XML schema of the Sitemap protocol.
+	 * 
+	 * @return the value of validate.
+	 */
+	public boolean isValidate() {
+		return validate;
+	}
+
+	private void openShard() throws IOException {
+		if (streamingValidation && files.size() == MAX_URLS) {
+			throw new IOException("A sitemap index can not reference more than " + MAX_URLS + " sitemaps.");
+		}
+		// Moved to its final name once it is known whether the sitemap needs more than one shard
+		final File file = FileReplacer.tempFile(new File(directory, fileNamePrefix + (files.size() + 1) + ".xml"));
+		digest.reset();
+		out = new BufferedOutputStream(new DigestOutputStream(new FileOutputStream(file), digest), 64 * 1024);
+		files.add(file);
+		out.write(HEADER);
+		bytesInShard = HEADER.length;
+		urlsInShard = 0;
+		alternatesInShard = false;
+	}
+
+	/**
+	 * Moves a written file into place unless the target has the same content.
+	 * 
+	 * @return the target
+	 */
+	private File replace(final File temp, final byte[] hash, final File target) throws IOException {
+		if (!FileReplacer.replace(temp, hash, target)) {
+			unchangedFiles.incrementAndGet();
+		}
+		return target;
+	}
+
+	/**
+	 * Set the compression level of the shards.
+	 * 
+	 * @param compressionLevel
+	 *            new value of compressionLevel, from 0 to 9 or {@link #NO_COMPRESSION}.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the level is out of range
+	 */
+	public void setCompressionLevel(final int compressionLevel) {
+		if (compressionLevel != NO_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+			throw new IllegalArgumentException("Argument 'compressionLevel' must be between 0 and 9.");
+		}
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Set the number of threads compressing completed shards in the background.
+	 * 
+	 * @param compressionThreads
+	 *            new value of compressionThreads, at least 1.
+	 */
+	public void setCompressionThreads(final int compressionThreads) {
+		this.compressionThreads = Math.max(1, compressionThreads);
+	}
+
+	/**
+	 * Set the date format used for the last modification dates.
+	 * 
+	 * @param dateFormat
+	 *            new value of dateFormat.
+	 */
+	public void setDateFormat(final W3CDateFormat dateFormat) {
+		encoder.setDateFormat(dateFormat);
+	}
+
+	/**
+	 * Set the file the sitemap index is written to if there is more than one shard.
+	 * 
+	 * @param indexFile
+	 *            new value of indexFile, {@code null} to leave the listing of the shards to the caller.
+	 */
+	public void setIndexFile(final File indexFile) {
+		this.indexFile = indexFile;
+	}
+
+	/**
+	 * Set whether every URL is checked against the rules of the Sitemap protocol before it is written: the length and
+	 * the host of the URL, the range of the priority, the characters of the entry and the size of the entry. The URL count and size limits of the
+	 * files are kept by starting a new shard anyway, and the host of the URL is checked anyway. Unlike the validation
+	 * against the XML schema this does not read the written files again.
+	 * 
+	 * @param streamingValidation
+	 *            new value of streamingValidation.
+	 */
+	public void setStreamingValidation(final boolean streamingValidation) {
+		this.streamingValidation = streamingValidation;
+	}
+
+	/**
+	 * Set whether every completed file is validated against the XML schema of the Sitemap protocol.
+	 * 
+	 * @param validate
+	 *            new value of validate.
+	 */
+	public void setValidate(final boolean validate) {
+		this.validate = validate;
+	}
+
+}
@@ -0,0 +1,288 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Include and exclude patterns of URLs, compiled once into a trie of path segments.
+ * <p>
+ * The patterns are Ant-style paths: {@code **} matches any number of segments, {@code *} and {@code ?} match
+ * characters within a segment and a pattern ending with {@code /} matches a whole subtree. Patterns sharing a prefix
+ * share the nodes of the trie and literal segments are looked up by hash, so a URL is checked against thousands of
+ * patterns in about the time it takes to walk its segments.
+ * </p>
+ * <p>
+ * A filter is immutable and can be shared by several threads, the matches are counted by the caller.
+ * </p>
+ */
+final class UrlFilter {
+
+	/**
+	 * State of the automaton, reached after the segments on the path from the root.
+	 */
+	private static final class Node {
+
+		/**
+		 * The child matching any number of segments, {@code null} if there is none.
+		 */
+		private Node anySegments;
+
+		private Map<String, Node> literals;
+
+		/**
+		 * Whether this node is reached by {@code **} and matches the following segments as well.
+		 */
+		private final boolean recursive;
+
+		/**
+		 * The indexes of the rules whose pattern ends at this node.
+		 */
+		private int[] rules = NO_RULES;
+
+		/**
+		 * The glob of a wildcard node, {@code null} for other nodes.
+		 */
+		private final String segment;
+
+		private List<Node> wildcards;
+
+		Node(final String segment, final boolean recursive) {
+			this.segment = segment;
+			this.recursive = recursive;
+		}
+
+		void addRule(final int rule) {
+			final int[] extended = new int[rules.length + 1];
+			System.arraycopy(rules, 0, extended, 0, rules.length);
+			extended[rules.length] = rule;
+			rules = extended;
+		}
+
+		Node getChild(final String glob) {
+			if (glob.equals("**")) {
+				if (anySegments == null) {
+					anySegments = new Node(null, true);
+				}
+				return anySegments;
+			}
+			if (glob.indexOf('*') < 0 && glob.indexOf('?') < 0) {
+				if (literals == null) {
+					literals = new HashMap<String, Node>();
+				}
+				Node child = literals.get(glob);
+				if (child == null) {
+					child = new Node(null, false);
+					literals.put(glob, child);
+				}
+				return child;
+			}
+			if (wildcards == null) {
+				wildcards = new ArrayList<Node>();
+			}
+			for (final Node child : wildcards) {
+				if (child.segment.equals(glob)) {
+					return child;
+				}
+			}
+			final Node child = new Node(glob, false);
+			wildcards.add(child);
+			return child;
+		}
+
+	}
+
+	private static final int[] NO_RULES = new int[0];
+
+	/**
+	 * Adds a node and the nodes which are reached from it without consuming a segment.
+	 */
+	private static void addState(final List<Node> states, final Node node) {
+		if (!states.contains(node)) {
+			states.add(node);
+			if (node.anySegments != null) {
+				addState(states, node.anySegments);
+			}
+		}
+	}
+
+	private static Node compile(final List<String> patterns, final int firstRule, final List<String> labels, final String kind) {
+		final Node root = new Node(null, false);
+		if (patterns == null) {
+			return root;
+		}
+		for (int i = 0; i < patterns.size(); i++) {
+			String pattern = patterns.get(i).trim();
+			labels.add(kind + " " + pattern);
+			if (pattern.endsWith("/")) {
+				pattern += "**";
+			}
+			Node node = root;
+			for (final String glob : split(pattern)) {
+				node = node.getChild(glob);
+			}
+			node.addRule(firstRule + i);
+		}
+		return root;
+	}
+
+	/**
+	 * Matches a segment against a glob with {@code *} and {@code ?}, backtracking to the last {@code *} on a mismatch.
+	 */
+	static boolean matches(final String glob, final String segment) {
+		int g = 0;
+		int s = 0;
+		int star = -1;
+		int starMatch = 0;
+		while (s < segment.length()) {
+			if (g < glob.length() && (glob.charAt(g) == '?' || glob.charAt(g) == segment.charAt(s))) {
+				g++;
+				s++;
+			} else if (g < glob.length() && glob.charAt(g) == '*') {
+				star = g++;
+				starMatch = s;
+			} else if (star >= 0) {
+				g = star + 1;
+				s = ++starMatch;
+			} else {
+				return false;
+			}
+		}
+		while (g < glob.length() && glob.charAt(g) == '*') {
+			g++;
+		}
+		return g == glob.length();
+	}
+
+	/**
+	 * Splits a path into its non-empty segments.
+	 */
+	static List<String> split(final String path) {
+		final List<String> segments = new ArrayList<String>();
+		int start = 0;
+		while (start <= path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (end > start) {
+				segments.add(path.substring(start, end));
+			}
+			start = end + 1;
+		}
+		return segments;
+	}
+
+	private final Node excludes;
+
+	private final int includeCount;
+
+	private final Node includes;
+
+	private final List<String> rules;
+
+	/**
+	 * Constructor compiles the patterns.
+	 * 
+	 * @param includes
+	 *            the patterns of the URLs to keep, all URLs are kept if {@code null} or empty
+	 * @param excludes
+	 *            the patterns of the URLs to drop, may be {@code null}
+	 */
+	UrlFilter(final List<String> includes, final List<String> excludes) {
+		final List<String> labels = new ArrayList<String>();
+		this.includes = compile(includes, 0, labels, "include");
+		includeCount = labels.size();
+		this.excludes = compile(excludes, includeCount, labels, "exclude");
+		rules = Collections.unmodifiableList(labels);
+	}
+
+	/**
+	 * Checks whether a URL passes the filter. Every include rule is checked; the exclude rules only if the path is
+	 * included.
+	 * 
+	 * @param path
+	 *            the path of the URL, relative to the project URL
+	 * @param matchCounts
+	 *            the number of matched URLs per rule, in the order of {@link #getRules()}, which is updated
+	 * @return whether the URL is kept
+	 */
+	boolean accept(final String path, final int[] matchCounts) {
+		final List<String> segments = split(path);
+		if (includeCount > 0 && !match(includes, segments, matchCounts)) {
+			return false;
+		}
+		return !match(excludes, segments, matchCounts);
+	}
+
+	/**
+	 * Get the rules, {@code include} or {@code exclude} followed by the pattern.
+	 * 
+	 * @return the rules, includes first, in the order they were configured
+	 */
+	List<String> getRules() {
+		return rules;
+	}
+
+	/**
+	 * Runs the automaton of a trie over the segments and counts the matching rules.
+	 * 
+	 * @return whether any rule matched
+	 */
+	private boolean match(final Node root, final List<String> segments, final int[] matchCounts) {
+		List<Node> states = new ArrayList<Node>();
+		addState(states, root);
+		for (final String segment : segments) {
+			final List<Node> next = new ArrayList<Node>();
+			for (final Node node : states) {
+				if (node.recursive) {
+					addState(next, node);
+				}
+				if (node.literals != null) {
+					final Node child = node.literals.get(segment);
+					if (child != null) {
+						addState(next, child);
+					}
+				}
+				if (node.wildcards != null) {
+					for (final Node child : node.wildcards) {
+						if (matches(child.segment, segment)) {
+							addState(next, child);
+						}
+					}
+				}
+			}
+			if (next.isEmpty()) {
+				return false;
+			}
+			states = next;
+		}
+
+		boolean matched = false;
+		for (final Node node : states) {
+			for (final int rule : node.rules) {
+				matchCounts[rule]++;
+				matched = true;
+			}
+		}
+		return matched;
+	}
+
+}
@@ -0,0 +1,242 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a UTF-8 encoded list of URLs line by line, either one URL per line or comma-separated values with the URL in
+ * the first column. Fields may be quoted with {@code "}, a quote within a quoted field is doubled. Blank lines and lines
+ * starting with {@code #} are skipped.
+ * <p>
+ * The file is read in chunks through a {@link FileChannel} into a single buffer, so only the current line is held on
+ * the heap however long the list is. The buffer grows for lines longer than a chunk, up to {@link #MAX_LINE_LENGTH}.
+ * </p>
+ */
+final class UrlListReader {
+
+	/**
+	 * Maximum length of a line in bytes.
+	 */
+	static final int MAX_LINE_LENGTH = 1024 * 1024;
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final File file;
+
+	private final FileChannel channel;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+	private final List<String> fields = new ArrayList<String>();
+
+	private final StringBuilder field = new StringBuilder(256);
+
+	private final W3CDateParser dates = new W3CDateParser();
+
+	private int lineNumber;
+
+	private boolean endOfFile;
+
+	/**
+	 * Opens a list.
+	 * 
+	 * @param file
+	 *            the file to read
+	 * @throws IOException
+	 *             if the file can not be opened
+	 */
+	UrlListReader(final File file) throws IOException {
+		this.file = file;
+		channel = new FileInputStream(file).getChannel();
+		buffer.flip();
+	}
+
+	/**
+	 * Closes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file can not be closed
+	 */
+	void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Creates an exception for an invalid line, telling the file and the line number.
+	 * 
+	 * @param reason
+	 *            what is wrong with the current line
+	 * @return the exception
+	 */
+	IOException createException(final String reason) {
+		return new IOException("Invalid line " + lineNumber + " of '" + file + "': " + reason);
+	}
+
+	/**
+	 * Gets a field of the current line.
+	 * 
+	 * @param index
+	 *            the index of the column, {@code 0} for the URL
+	 * @return the trimmed field or {@code null} if the line has no such field or the field is empty
+	 */
+	String getField(final int index) {
+		if (index >= fields.size()) {
+			return null;
+		}
+		final String value = fields.get(index);
+		return value.length() == 0 ? null : value;
+	}
+
+	/**
+	 * Get the number of the current line.
+	 * 
+	 * @return the value of lineNumber, starting at 1.
+	 */
+	int getLineNumber() {
+		return lineNumber;
+	}
+
+	/**
+	 * Advances to the next line which is neither blank nor a comment.
+	 * 
+	 * @return {@code false} if the end of the file is reached
+	 * @throws IOException
+	 *             if the file can not be read or a line is too long
+	 */
+	boolean next() throws IOException {
+		while (true) {
+			final int end = nextLineEnd();
+			if (end < 0) {
+				return false;
+			}
+			lineNumber++;
+			final int start = buffer.position();
+			buffer.position(end < buffer.limit() ? end + 1 : end);
+			int length = end - start;
+			if (length > 0 && buffer.get(start + length - 1) == '\r') {
+				length--;
+			}
+			String line = new String(buffer.array(), buffer.arrayOffset() + start, length, StreamingSitemapWriter.UTF_8).trim();
+			if (lineNumber == 1 && line.length() > 0 && line.charAt(0) == '\ufeff') {
+				// Byte order mark
+				line = line.substring(1).trim();
+			}
+			if (line.length() > 0 && line.charAt(0) != '#') {
+				split(line);
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Finds the end of the next line, reading further chunks as needed.
+	 * 
+	 * @return the index of the line feed ending the line, the limit of the buffer for the last line without a line
+	 *         feed, or {@code -1} at the end of the file
+	 */
+	private int nextLineEnd() throws IOException {
+		int scanned = buffer.position();
+		while (true) {
+			for (int i = scanned; i < buffer.limit(); i++) {
+				if (buffer.get(i) == '\n') {
+					return i;
+				}
+			}
+			if (endOfFile) {
+				return buffer.hasRemaining() ? buffer.limit() : -1;
+			}
+
+			// Keep the partial line and append the next chunk, growing the buffer if the line fills it
+			scanned = buffer.remaining();
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				if (buffer.capacity() >= MAX_LINE_LENGTH) {
+					lineNumber++;
+					throw createException("line is longer than " + MAX_LINE_LENGTH + " bytes");
+				}
+				final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+			endOfFile = channel.read(buffer) < 0;
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Parses a date in one of the formats of the W3C Datetime note. Dates without a time zone are taken as UTC.
+	 * 
+	 * @param date
+	 *            the date to parse
+	 * @return the time in milliseconds
+	 * @throws IOException
+	 *             if the date is not valid
+	 */
+	long parseDate(final String date) throws IOException {
+		try {
+			return dates.parse(date);
+		} catch (final IllegalArgumentException e) {
+			throw createException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Splits a line into its comma-separated fields.
+	 */
+	private void split(final String line) throws IOException {
+		fields.clear();
+		if (line.indexOf(',') < 0 && line.indexOf('"') < 0) {
+			fields.add(line);
+			return;
+		}
+
+		field.setLength(0);
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			final char c = line.charAt(i);
+			if (quoted) {
+				if (c != '"') {
+					field.append(c);
+				} else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+					field.append(c);
+					i++;
+				} else {
+					quoted = false;
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString().trim());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		if (quoted) {
+			throw createException("quote is not closed");
+		}
+		fields.add(field.toString().trim());
+	}
+
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+
+/**
+ * Receives the URLs extracted for a sitemap, one after another.
+ */
+public interface UrlSink {
+
+	/**
+	 * Adds a URL.
+	 * 
+	 * @param url
+	 *            the URL to add
+	 * @throws IOException
+	 *             if the URL can not be written
+	 */
+	void add(SitemapUrl url) throws IOException;
+
+	/**
+	 * Signals that all URLs have been added, so that pending output can be completed.
+	 * 
+	 * @throws IOException
+	 *             if the pending output can not be written
+	 */
+	void finish() throws IOException;
+
+}
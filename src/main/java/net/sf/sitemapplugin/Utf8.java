@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+/**
+ * Encodes characters as UTF-8 into a caller supplied buffer, so that no intermediate {@code String} or byte array is
+ * created.
+ */
+final class Utf8 {
+
+	/**
+	 * Encodes the given characters.
+	 * 
+	 * @param chars
+	 *            the characters to encode
+	 * @param target
+	 *            the buffer to encode into, at least {@link #maxLength(int)} bytes long
+	 * @return the number of bytes written
+	 */
+	static int encode(final CharSequence chars, final byte[] target) {
+		int pos = 0;
+		final int length = chars.length();
+		for (int i = 0; i < length; i++) {
+			final char c = chars.charAt(i);
+			if (c < 0x80) {
+				target[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				target[pos++] = (byte) (0xc0 | c >> 6);
+				target[pos++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				final int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+				target[pos++] = (byte) (0xf0 | codePoint >> 18);
+				target[pos++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+				target[pos++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+				target[pos++] = (byte) (0x80 | codePoint & 0x3f);
+			} else {
+				target[pos++] = (byte) (0xe0 | c >> 12);
+				target[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+				target[pos++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		return pos;
+	}
+
+	/**
+	 * Gets the maximum number of bytes the given number of characters can be encoded to.
+	 * 
+	 * @param chars
+	 *            the number of characters
+	 * @return the maximum number of bytes
+	 */
+	static int maxLength(final int chars) {
+		return chars * 3;
+	}
+
+	private Utf8() {
+		// utility class
+	}
+
+}
@@ -0,0 +1,244 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Checks that the URLs passed through point to rendered pages.
+ * <p>
+ * The URLs are collected in batches, whose pages are looked up by several threads at once. The URLs of a batch are
+ * then passed on in their original order, so that at most one batch is held in memory. URLs which are not below the
+ * base URL of the {@link RenderedPages} can not be checked and are passed on as they are.
+ * </p>
+ */
+final class VerifyingUrlSink implements UrlSink {
+
+	/**
+	 * What to do with a URL whose page was not rendered.
+	 */
+	enum Action {
+
+		/**
+		 * Leaves the URL out of the sitemap.
+		 */
+		DROP,
+
+		/**
+		 * Fails the build once all URLs are checked.
+		 */
+		FAIL,
+
+		/**
+		 * Keeps the URL and reports it.
+		 */
+		WARN;
+
+	}
+
+	/**
+	 * Number of URLs which are checked at once.
+	 */
+	static final int BATCH_SIZE = 2048;
+
+	/**
+	 * Maximum number of missing URLs which are kept for the report.
+	 */
+	static final int MAX_REPORTED = 100;
+
+	private final Action action;
+
+	private final List<SitemapUrl> batch = new ArrayList<SitemapUrl>(BATCH_SIZE);
+
+	private int checkedCount;
+
+	private final UrlSink delegate;
+
+	private final ExecutorService executor;
+
+	private final List<String> missing = new ArrayList<String>();
+
+	private int missingCount;
+
+	private final RenderedPages pages;
+
+	private final int parallelism;
+
+	private boolean passThrough;
+
+	private long time;
+
+	/**
+	 * Constructor sets all values.
+	 * 
+	 * @param pages
+	 *            the rendered pages
+	 * @param action
+	 *            what to do with a URL whose page was not rendered
+	 * @param executor
+	 *            the executor looking up the pages
+	 * @param parallelism
+	 *            the number of parts a batch is split into, usually the number of threads of the executor
+	 * @param delegate
+	 *            the sink receiving the checked URLs
+	 */
+	VerifyingUrlSink(final RenderedPages pages, final Action action, final ExecutorService executor, final int parallelism,
+			final UrlSink delegate) {
+		this.pages = pages;
+		this.action = action;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void add(final SitemapUrl url) throws IOException {
+		if (passThrough) {
+			delegate.add(url);
+			return;
+		}
+		batch.add(url);
+		if (batch.size() == BATCH_SIZE) {
+			flush();
+		}
+	}
+
+	@Override
+	public void finish() throws IOException {
+		flush();
+		delegate.finish();
+	}
+
+	/**
+	 * Checks the pages of the current batch and passes its URLs on.
+	 */
+	private void flush() throws IOException {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		final long start = System.nanoTime();
+		final boolean[] found = new boolean[batch.size()];
+		final int chunk = (batch.size() + parallelism - 1) / parallelism;
+		final List<Future<?>> futures = new ArrayList<Future<?>>(parallelism);
+		for (int from = 0; from < batch.size(); from += chunk) {
+			final int begin = from;
+			final int end = Math.min(from + chunk, batch.size());
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = begin; i < end; i++) {
+						final File file = pages.getFile(batch.get(i).getLocation());
+						found[i] = file == null || pages.exists(file);
+					}
+				}
+			}));
+		}
+		try {
+			for (final Future<?> future : futures) {
+				future.get();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while verifying the pages");
+		} catch (final ExecutionException e) {
+			throw new IOException("Can not verify the pages", e.getCause());
+		}
+		time += System.nanoTime() - start;
+		checkedCount += batch.size();
+
+		for (int i = 0; i < found.length; i++) {
+			final SitemapUrl url = batch.get(i);
+			if (!found[i]) {
+				missingCount++;
+				if (missing.size() < MAX_REPORTED) {
+					missing.add(url.getLocation());
+				}
+				if (action == Action.DROP) {
+					continue;
+				}
+			}
+			delegate.add(url);
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Get the value of action.
+	 * 
+	 * @return the value of action.
+	 */
+	Action getAction() {
+		return action;
+	}
+
+	/**
+	 * Get the number of checked URLs.
+	 * 
+	 * @return the number of URLs passed through so far, including those which can not be checked.
+	 */
+	int getCheckedCount() {
+		return checkedCount;
+	}
+
+	/**
+	 * Gets the first {@link #MAX_REPORTED} URLs whose page was not rendered.
+	 * 
+	 * @return the URLs in the order they were added
+	 */
+	List<String> getMissing() {
+		return Collections.unmodifiableList(missing);
+	}
+
+	/**
+	 * Get the number of URLs whose page was not rendered.
+	 * 
+	 * @return the number of missing pages.
+	 */
+	int getMissingCount() {
+		return missingCount;
+	}
+
+	/**
+	 * Get the time spent looking up the pages.
+	 * 
+	 * @return the time in nanoseconds.
+	 */
+	long getTime() {
+		return time;
+	}
+
+	/**
+	 * Passes the URLs added from now on without checking them, e.g. the entries of an existing sitemap whose pages were
+	 * rendered by an earlier build. The URLs added before are checked first, so that the order is kept.
+	 * 
+	 * @throws IOException
+	 *             if the URLs added before can not be passed on
+	 */
+	void passThrough() throws IOException {
+		flush();
+		passThrough = true;
+	}
+
+}
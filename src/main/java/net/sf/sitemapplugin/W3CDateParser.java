@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses dates in one of the formats of the W3C Datetime note, e.g. {@code 2011-07-04} or
+ * {@code 2011-07-04T18:30:00+02:00}. Dates without a time zone are taken as UTC.
+ * <p>
+ * A parser reuses its calendar and must not be shared by several threads.
+ * </p>
+ */
+final class W3CDateParser {
+
+	private static final Pattern W3C_DATE = Pattern
+			.compile("(\\d{4})(?:-(\\d{2})(?:-(\\d{2})(?:T(\\d{2}):(\\d{2})(?::(\\d{2})(?:\\.(\\d{1,3})\\d*)?)?(Z|[+-]\\d{2}:\\d{2}))?)?)?");
+
+	private static int parseInt(final Matcher matcher, final int group, final int defaultValue) {
+		return matcher.group(group) == null ? defaultValue : Integer.parseInt(matcher.group(group));
+	}
+
+	private final Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+
+	/**
+	 * Constructor creates a strict parser.
+	 */
+	W3CDateParser() {
+		calendar.setLenient(false);
+	}
+
+	/**
+	 * Parses a date.
+	 * 
+	 * @param date
+	 *            the date to parse
+	 * @return the time in milliseconds
+	 * @throws IllegalArgumentException
+	 *             if the date is not valid
+	 */
+	long parse(final String date) {
+		final Matcher matcher = W3C_DATE.matcher(date);
+		if (!matcher.matches()) {
+			throw new IllegalArgumentException("'" + date + "' is not a W3C datetime");
+		}
+		calendar.clear();
+		calendar.set(Integer.parseInt(matcher.group(1)), parseInt(matcher, 2, 1) - 1, parseInt(matcher, 3, 1), parseInt(matcher, 4, 0),
+				parseInt(matcher, 5, 0), parseInt(matcher, 6, 0));
+		final String millis = matcher.group(7);
+		calendar.set(Calendar.MILLISECOND, millis == null ? 0 : Integer.parseInt((millis + "00").substring(0, 3)));
+		final long time;
+		try {
+			time = calendar.getTimeInMillis();
+		} catch (final IllegalArgumentException e) {
+			throw new IllegalArgumentException("'" + date + "' is not a valid date", e);
+		}
+		final String zone = matcher.group(8);
+		if (zone == null || "Z".equals(zone)) {
+			return time;
+		}
+		final int offset = (Integer.parseInt(zone.substring(1, 3)) * 60 + Integer.parseInt(zone.substring(4))) * 60000;
+		return zone.charAt(0) == '+' ? time - offset : time + offset;
+	}
+
+}
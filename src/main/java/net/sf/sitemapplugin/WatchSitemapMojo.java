@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright 2012 André Rouél
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package net.sf.sitemapplugin;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+
+/**
+ * Watches the site directory and regenerates the sitemap of a locale as soon as its site descriptor or one of its
+ * source documents was saved. The goal runs until it is stopped, e.g. with Ctrl+C.
+ * <p>
+ * The sitemaps are generated with the configuration of the {@code sitemap} goal, e.g. the URL filter, sorting and
+ * the verification of the rendered pages, so that they have the same content as the sitemaps of that goal. The decoration
+ * models are resolved once and kept in memory, only the decoration model of a locale whose site descriptor changed is
+ * resolved again. The skin is never resolved, as the sitemap only depends on the menus.
+ * </p>
+ * 
+ * @goal watch
+ */
+public final class WatchSitemapMojo extends SitemapMojo {
+
+	private static final String DESCRIPTOR = "site.xml";
+
+	/**
+	 * Gets the locales whose sitemaps are affected by changed files. The default site descriptor is the fallback of
+	 * every locale, the other site descriptors and the documents in a language directory belong to a single locale,
+	 * all other documents belong to the default locale.
+	 * 
+	 * @param paths
+	 *            the changed paths relative to the site directory, separated by {@code /}
+	 * @param locales
+	 *            the available locales, the default locale first
+	 * @return the affected locales in the order of the available locales
+	 */
+	static Set<Locale> getAffectedLocales(final Collection<String> paths, final List<Locale> locales) {
+		final Set<String> languages = new TreeSet<String>();
+		for (final String path : paths) {
+			if (path.equals(DESCRIPTOR)) {
+				return new LinkedHashSet<Locale>(locales);
+			}
+			if (isSiteDescriptor(path)) {
+				languages.add(path.substring("site_".length(), path.length() - ".xml".length()));
+			} else {
+				final int slash = path.indexOf('/');
+				languages.add(slash < 0 ? "" : path.substring(0, slash));
+			}
+		}
+
+		// Documents which are not located in the directory of another locale belong to the default locale
+		final Set<String> unclaimed = new TreeSet<String>(languages);
+		for (final Locale locale : locales.subList(1, locales.size())) {
+			unclaimed.remove(locale.getLanguage());
+		}
+
+		final Set<Locale> affected = new LinkedHashSet<Locale>();
+		for (final Locale locale : locales) {
+			if (locale == locales.get(0) ? !unclaimed.isEmpty() : languages.contains(locale.getLanguage())) {
+				affected.add(locale);
+			}
+		}
+		return affected;
+	}
+
+	/**
+	 * Checks whether a path relative to the site directory denotes a site descriptor.
+	 */
+	static boolean isSiteDescriptor(final String path) {
+		return path.equals(DESCRIPTOR) || path.startsWith("site_") && path.endsWith(".xml") && path.indexOf('/') < 0;
+	}
+
+	/**
+	 * Interval in milliseconds in which the site directory is checked for changes.
+	 * 
+	 * @parameter expression="${maven.sitemap.pollInterval}" default-value="100"
+	 */
+	private long pollInterval;
+
+	/**
+	 * Time in milliseconds without further changes after which the sitemaps are regenerated, so that a burst of saves
+	 * triggers a single regeneration.
+	 * 
+	 * @parameter expression="${maven.sitemap.quietPeriod}" default-value="200"
+	 */
+	private long quietPeriod;
+
+	/**
+	 * Blocks until files changed and no further change was seen for the quiet period.
+	 * 
+	 * @return the changed paths
+	 */
+	private Set<String> awaitChanges(final DirectoryPoller poller) throws InterruptedException {
+		final Set<String> changed = new TreeSet<String>();
+		long lastChange = 0L;
+		while (changed.isEmpty() || System.currentTimeMillis() - lastChange < quietPeriod) {
+			Thread.sleep(pollInterval);
+			final List<String> paths = poller.poll();
+			if (!paths.isEmpty()) {
+				changed.addAll(paths);
+				lastChange = System.currentTimeMillis();
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Generates the sitemaps of all locales and regenerates them on every change, until the thread is interrupted.
+	 * 
+	 * @see org.apache.maven.plugin.Mojo#execute()
+	 */
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("maven.sitemap.skip = true: Skipping site generation");
+			return;
+		}
+		if (!siteDirectory.isDirectory()) {
+			throw new MojoFailureException("Site directory '" + siteDirectory + "' does not exist.");
+		}
+
+		final List<Locale> localesList = siteTool.getAvailableLocales(locales);
+		final DirectoryPoller poller = new DirectoryPoller(siteDirectory);
+		final Map<Locale, DecorationModel> decorations = new HashMap<Locale, DecorationModel>();
+		try {
+			for (final Locale locale : localesList) {
+				decorations.put(locale, getDecorationModel(locale));
+			}
+			regenerate(localesList, localesList, decorations);
+
+			getLog().info("Watching " + siteDirectory + " for changes, stop with Ctrl+C.");
+			while (!Thread.currentThread().isInterrupted()) {
+				final Set<String> changed = awaitChanges(poller);
+				if (getLog().isDebugEnabled()) {
+					getLog().debug("Changed files: " + changed);
+				}
+
+				final Set<String> descriptors = new TreeSet<String>();
+				for (final String path : changed) {
+					if (isSiteDescriptor(path)) {
+						descriptors.add(path);
+					}
+				}
+				try {
+					for (final Locale locale : getAffectedLocales(descriptors, localesList)) {
+						decorations.put(locale, getDecorationModel(locale));
+					}
+				} catch (final MojoExecutionException e) {
+					// Probably saved in the middle of an edit, keep the previous state until the next save
+					getLog().error("Can not resolve the site descriptor: " + e.getMessage());
+					continue;
+				}
+				regenerate(getAffectedLocales(changed, localesList), localesList, decorations);
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			shutdownVerificationExecutor();
+		}
+		getLog().info("Stopped watching " + siteDirectory + ".");
+	}
+
+	/**
+	 * Regenerates the sitemaps of the given locales, errors are logged so that watching goes on.
+	 */
+	private void regenerate(final Collection<Locale> localesToRender, final List<Locale> localesList,
+			final Map<Locale, DecorationModel> decorations) {
+		if (localesToRender.isEmpty()) {
+			return;
+		}
+		final SourceTimestampIndex timestamps = SourceTimestampIndex.build(siteDirectory, generatedSiteDirectory);
+		final SitemapMetrics metrics = new SitemapMetrics();
+		// A single sitemap lists the pages of all locales
+		final Collection<Locale> sitemaps = isAlternates(localesList) ? Collections.singleton(localesList.get(0))
+				: localesToRender;
+		for (final Locale locale : sitemaps) {
+			final long start = System.currentTimeMillis();
+			try {
+				if (isAlternates(localesList)) {
+					renderAlternates(localesList, decorations, timestamps, metrics);
+				} else {
+					render(locale, localesList.get(0), decorations.get(locale), null, timestamps, metrics);
+				}
+				getLog().info("Processed the changes of locale '" + locale + "' within " + (System.currentTimeMillis() - start)
+						+ " ms.");
+			} catch (final IOException e) {
+				getLog().error("Error during sitemap generation for locale '" + locale + "'", e);
+			} catch (final MojoExecutionException e) {
+				getLog().error("Error during sitemap generation for locale '" + locale + "'", e);
+			} catch (final MojoFailureException e) {
+				// E.g. missing pages, which are reported until the pages are rendered
+				getLog().error("Sitemap of locale '" + locale + "' is not complete: " + e.getMessage());
+			} catch (final RuntimeException e) {
+				// E.g. a site descriptor saved in the middle of an edit, which must not end the watch
+				getLog().error("Error during sitemap generation for locale '" + locale + "'", e);
+			}
+		}
+	}
+
+}
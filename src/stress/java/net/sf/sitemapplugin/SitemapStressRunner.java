@@ -0,0 +1,118 @@
+package net.sf.sitemapplugin;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.io.xpp3.DecorationXpp3Reader;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.doxia.tools.SiteToolException;
+import org.apache.maven.model.Build;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.IOUtil;
+import org.codehaus.plexus.util.ReaderFactory;
+import org.codehaus.plexus.util.ReflectionUtils;
+import org.codehaus.plexus.util.xml.pull.XmlPullParserException;
+
+/**
+ * Runs the sitemap goal on a single site descriptor, started by {@link SitemapStressTest} in a JVM of its own so that
+ * the heap limit applies to the goal alone. The last line of the output reports the peak resident set size.
+ * <p>
+ * Arguments: the base directory of the project, its site descriptor is expected at {@code src/site/site.xml}.
+ * </p>
+ */
+public final class SitemapStressRunner {
+
+	/**
+	 * Prefix of the output line with the peak resident set size in kilobytes, {@code -1} if it is unknown.
+	 */
+	static final String PEAK_RSS = "peak-rss-kb=";
+
+	/**
+	 * Creates a site tool which reads the site descriptor as it is, without inheritance or interpolation.
+	 */
+	private static SiteTool createSiteTool(final File descriptor) {
+		return new SiteToolStub() {
+			@Override
+			protected DecorationModel getDecorationModel(final MavenProject project, final Locale locale)
+					throws SiteToolException {
+				return read(descriptor);
+			}
+
+			@Override
+			protected File getSiteDescriptor(final File basedir, final Locale locale) {
+				return descriptor;
+			}
+		}.create();
+	}
+
+	/**
+	 * Reads the peak resident set size of this process, which is only known on Linux.
+	 *
+	 * @return the size in kilobytes or {@code -1}
+	 */
+	private static long getPeakRss() throws IOException {
+		final File status = new File("/proc/self/status");
+		if (!status.isFile()) {
+			return -1L;
+		}
+		final BufferedReader reader = new BufferedReader(new FileReader(status));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("VmHWM:")) {
+					return Long.parseLong(line.substring(6).replace("kB", "").trim());
+				}
+			}
+			return -1L;
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	public static void main(final String[] args) throws Exception {
+		final File basedir = new File(args[0]);
+		final Build build = new Build();
+		build.setDirectory(new File(basedir, "target").getPath());
+		final MavenProject project = new MavenProject();
+		project.setFile(new File(basedir, "pom.xml"));
+		project.setBuild(build);
+		project.setUrl("http://example.org/");
+
+		final SitemapMojo mojo = new SitemapMojo();
+		ReflectionUtils.setVariableValueInObject(mojo, "project", project);
+		ReflectionUtils.setVariableValueInObject(mojo, "siteTool", createSiteTool(new File(basedir, "src/site/site.xml")));
+		ReflectionUtils.setVariableValueInObject(mojo, "locales", "en");
+		ReflectionUtils.setVariableValueInObject(mojo, "siteDirectory", new File(basedir, "src/site"));
+		ReflectionUtils.setVariableValueInObject(mojo, "generatedSiteDirectory", new File(basedir, "target/generated-site"));
+		ReflectionUtils.setVariableValueInObject(mojo, "outputDirectory", new File(basedir, "target/site"));
+		ReflectionUtils.setVariableValueInObject(mojo, "changeFreq", "weekly");
+		ReflectionUtils.setVariableValueInObject(mojo, "descriptorOnly", Boolean.TRUE);
+		mojo.execute();
+
+		System.out.println(PEAK_RSS + getPeakRss());
+	}
+
+	private static DecorationModel read(final File descriptor) throws SiteToolException {
+		Reader reader = null;
+		try {
+			reader = ReaderFactory.newXmlReader(descriptor);
+			return new DecorationXpp3Reader().read(reader);
+		} catch (final IOException e) {
+			throw new SiteToolException("Can not read " + descriptor, e);
+		} catch (final XmlPullParserException e) {
+			throw new SiteToolException("Can not parse " + descriptor, e);
+		} finally {
+			IOUtil.close(reader);
+		}
+	}
+
+	private SitemapStressRunner() {
+		// no instances
+	}
+
+}
@@ -0,0 +1,207 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Generates the sitemaps of large site descriptors in a forked JVM with a small heap and checks that the goal
+ * completes within its time and memory budgets. Runs with {@code mvn -Pstress verify}.
+ * <p>
+ * The heap limits grow with the descriptor, as the site tool hands over the whole decoration model at once.
+ * </p>
+ */
+public class SitemapStressTest {
+
+	/**
+	 * Collects the output of the forked JVM, so that it can not block on a full pipe.
+	 */
+	private static final class OutputCollector extends Thread {
+
+		private final Process process;
+
+		private final StringBuffer output = new StringBuffer();
+
+		OutputCollector(final Process process) {
+			this.process = process;
+		}
+
+		String getOutput() {
+			return output.toString();
+		}
+
+		@Override
+		public void run() {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+			try {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					output.append(line).append('\n');
+				}
+			} catch (final IOException e) {
+				output.append(e).append('\n');
+			} finally {
+				IOUtil.close(reader);
+			}
+		}
+
+	}
+
+	/**
+	 * Memory of the forked JVM besides the heap, e.g. class metadata, code cache and thread stacks.
+	 */
+	private static final int NON_HEAP_MB = 256;
+
+	private static long getCounter(final String metrics, final String name) {
+		final Matcher matcher = Pattern.compile("\"" + name + "\": (\\d+)").matcher(metrics);
+		assertTrue(metrics, matcher.find());
+		return Long.parseLong(matcher.group(1));
+	}
+
+	private static long getPeakRss(final String output) {
+		final int start = output.lastIndexOf(SitemapStressRunner.PEAK_RSS);
+		assertTrue(output, start >= 0);
+		final int end = output.indexOf('\n', start);
+		return Long.parseLong(output.substring(start + SitemapStressRunner.PEAK_RSS.length(), end));
+	}
+
+	/**
+	 * Writes a site descriptor with a single menu. The items are written depth-first: every item above the given depth
+	 * gets up to {@code fanOut} children, and whenever a tree is complete a new top level item is started until the
+	 * requested number of items is reached.
+	 */
+	private static void writeDescriptor(final File file, final int items, final int depth, final int fanOut) throws IOException {
+		file.getParentFile().mkdirs();
+		final Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<project name=\"Stress\">\n<body>\n<menu name=\"Pages\">\n");
+			int created = 0;
+			while (created < items) {
+				created = writeItem(out, created, items, 1, depth, fanOut);
+			}
+			out.write("</menu>\n</body>\n</project>\n");
+		} finally {
+			IOUtil.close(out);
+		}
+	}
+
+	/**
+	 * Writes an item followed by its children.
+	 *
+	 * @return the number of items written so far
+	 */
+	private static int writeItem(final Writer out, final int index, final int items, final int level, final int depth,
+			final int fanOut) throws IOException {
+		out.write("<item name=\"Page " + index + "\" href=\"section" + index % 100 + "/page" + index + ".html\"");
+		int created = index + 1;
+		if (level < depth && created < items) {
+			out.write(">\n");
+			for (int i = 0; i < fanOut && created < items; i++) {
+				created = writeItem(out, created, items, level + 1, depth, fanOut);
+			}
+			out.write("</item>\n");
+		} else {
+			out.write("/>\n");
+		}
+		return created;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Runs the goal on a generated site descriptor in a forked JVM.
+	 *
+	 * @param items
+	 *            the number of menu items
+	 * @param depth
+	 *            the number of levels of a tree, {@code 1} creates a flat menu
+	 * @param fanOut
+	 *            the maximum number of children of an item
+	 * @param heapMb
+	 *            the maximum heap size of the forked JVM
+	 * @param timeBudgetSeconds
+	 *            the time the forked JVM may take, including its start
+	 */
+	private void run(final int items, final int depth, final int fanOut, final int heapMb, final int timeBudgetSeconds)
+			throws IOException, InterruptedException {
+		final File basedir = folder.newFolder("project");
+		writeDescriptor(new File(basedir, "src/site/site.xml"), items, depth, fanOut);
+
+		final String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+		final ProcessBuilder builder = new ProcessBuilder(java, "-Xmx" + heapMb + "m", "-cp", System.getProperty("java.class.path"),
+				SitemapStressRunner.class.getName(), basedir.getPath());
+		builder.redirectErrorStream(true);
+		final long start = System.currentTimeMillis();
+		final Process process = builder.start();
+		final OutputCollector collector = new OutputCollector(process);
+		collector.start();
+		final Timer timer = new Timer(true);
+		timer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				process.destroy();
+			}
+		}, timeBudgetSeconds * 1000L);
+		final int exitCode;
+		try {
+			exitCode = process.waitFor();
+		} finally {
+			timer.cancel();
+		}
+		final long elapsed = System.currentTimeMillis() - start;
+		collector.join();
+		final String output = collector.getOutput();
+
+		assertTrue("Took " + elapsed + " ms, the budget is " + timeBudgetSeconds + " s", elapsed < timeBudgetSeconds * 1000L);
+		assertEquals(output, 0, exitCode);
+		final long peakRss = getPeakRss(output);
+		if (peakRss >= 0) {
+			final long budget = (heapMb + NON_HEAP_MB) * 1024L;
+			assertTrue("Peak RSS of " + peakRss + " kB exceeds the budget of " + budget + " kB", peakRss <= budget);
+		}
+
+		final String metrics = FileUtils.fileRead(new File(basedir, "target/sitemap/metrics.json"), "UTF-8");
+		assertEquals(items, getCounter(metrics, "urls"));
+		assertEquals((items + StreamingSitemapWriter.MAX_URLS - 1) / StreamingSitemapWriter.MAX_URLS, getCounter(metrics, "shards"));
+	}
+
+	@Test
+	public void testDeeplyNested100k() throws Exception {
+		run(100000, 1000, 1, 96, 60);
+	}
+
+	@Test
+	public void testFlat10k() throws Exception {
+		run(10000, 1, 1, 32, 30);
+	}
+
+	@Test
+	public void testNested100k() throws Exception {
+		run(100000, 5, 10, 96, 60);
+	}
+
+	@Test
+	public void testNested1M() throws Exception {
+		run(1000000, 3, 100, 512, 300);
+	}
+
+}
@@ -0,0 +1,165 @@
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public class AggregateSitemapMojoTest extends AbstractMojoTestCase {
+
+	private static MavenProject createProject(final File basedir, final String artifactId, final String url, final MavenProject parent) {
+		final Build build = new Build();
+		build.setDirectory(new File(basedir, "target").getPath());
+		final MavenProject project = new MavenProject();
+		project.setFile(new File(basedir, "pom.xml"));
+		project.setBuild(build);
+		project.setGroupId("org.example");
+		project.setArtifactId(artifactId);
+		project.setVersion("1.0");
+		project.setName("Module " + artifactId);
+		project.setUrl(url);
+		project.setParent(parent);
+		return project;
+	}
+
+	/**
+	 * Creates a site tool without site descriptors, whose decoration models link to the page of the module and to the
+	 * start page of the parent, like an inherited menu interpolated with the properties of the module does.
+	 */
+	private static SiteTool createSiteTool() {
+		return new SiteToolStub() {
+			@Override
+			protected DecorationModel getDecorationModel(final MavenProject module, final Locale locale) {
+				final Menu menu = new Menu();
+				menu.addItem(item(module.getName(), module.getArtifactId() + ".html"));
+				menu.addItem(item("Parent", "http://example.org/index.html"));
+				final DecorationModel model = new DecorationModel();
+				model.addMenu(menu);
+				return model;
+			}
+		}.create();
+	}
+
+	private static MenuItem item(final String name, final String href) {
+		final MenuItem item = new MenuItem();
+		item.setName(name);
+		item.setHref(href);
+		return item;
+	}
+
+	private static String read(final File file) throws IOException {
+		assertTrue(file + " is missing", file.isFile());
+		return FileUtils.fileRead(file, "UTF-8");
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setup() throws Exception {
+		super.setUp();
+	}
+
+	@Test
+	public void testAggregateSitemapMojo() throws Exception {
+		final File pom = getTestFile("src/test/resources/unit/plugin-to-test/pom.xml");
+		assertNotNull(pom);
+		assertTrue(pom.exists());
+
+		final AggregateSitemapMojo mojo = (AggregateSitemapMojo) lookupMojo("aggregate", pom);
+		assertNotNull(mojo);
+	}
+
+	@Test
+	public void testDuplicateArtifactIds() throws Exception {
+		final File basedir = folder.newFolder("parent");
+		final MavenProject parent = createProject(basedir, "parent", "http://example.org/", null);
+		final MavenProject other = createProject(folder.newFolder("other"), "a", "http://example.org/other/", parent);
+		other.setGroupId("org.other");
+		final List<MavenProject> reactor = Arrays.asList(parent,
+				createProject(folder.newFolder("a"), "a", "http://example.org/a/", parent), other);
+
+		final AggregateSitemapMojo mojo = new AggregateSitemapMojo();
+		setVariableValueToObject(mojo, "project", parent);
+		setVariableValueToObject(mojo, "reactorProjects", reactor);
+		setVariableValueToObject(mojo, "siteTool", createSiteTool());
+		setVariableValueToObject(mojo, "locales", "en");
+		setVariableValueToObject(mojo, "siteDirectory", new File(basedir, "src/site"));
+		setVariableValueToObject(mojo, "generatedSiteDirectory", new File(basedir, "target/generated-site"));
+		setVariableValueToObject(mojo, "outputDirectory", new File(basedir, "target/site"));
+		setVariableValueToObject(mojo, "changeFreq", "monthly");
+		mojo.execute();
+
+		final File site = new File(basedir, "target/site");
+		final String index = read(new File(site, Sitemap.INDEX_FILE_NAME));
+		for (final String name : Arrays.asList("parent", "org.example.a", "org.other.a")) {
+			assertTrue(index, index.contains("<loc>http://example.org/sitemap-" + name + ".xml</loc>"));
+		}
+		assertEquals(index, 3, index.split("<loc>").length - 1);
+		assertFalse(new File(site, "sitemap-a.xml").exists());
+		final String sitemap = read(new File(site, "sitemap-org.other.a.xml"));
+		assertTrue(sitemap, sitemap.contains("<loc>http://example.org/other/a.html</loc>"));
+	}
+
+	@Test
+	public void testInheritedMenus() throws Exception {
+		final File basedir = folder.newFolder("parent");
+		final MavenProject parent = createProject(basedir, "parent", "http://example.org/", null);
+		final List<MavenProject> reactor = Arrays.asList(parent,
+				createProject(folder.newFolder("a"), "a", "http://example.org/a/", parent),
+				createProject(folder.newFolder("b"), "b", "http://example.org/b/", parent));
+
+		final AggregateSitemapMojo mojo = new AggregateSitemapMojo();
+		setVariableValueToObject(mojo, "project", parent);
+		setVariableValueToObject(mojo, "reactorProjects", reactor);
+		setVariableValueToObject(mojo, "siteTool", createSiteTool());
+		setVariableValueToObject(mojo, "locales", "en");
+		setVariableValueToObject(mojo, "siteDirectory", new File(basedir, "src/site"));
+		setVariableValueToObject(mojo, "generatedSiteDirectory", new File(basedir, "target/generated-site"));
+		setVariableValueToObject(mojo, "outputDirectory", new File(basedir, "target/site"));
+		setVariableValueToObject(mojo, "changeFreq", "monthly");
+		final File site = new File(basedir, "target/site");
+		site.mkdirs();
+		final File removedModule = new File(site, "sitemap-removed.xml");
+		removedModule.createNewFile();
+		mojo.execute();
+
+		assertFalse(removedModule.exists());
+		final String index = read(new File(site, Sitemap.INDEX_FILE_NAME));
+		for (final String artifactId : Arrays.asList("parent", "a", "b")) {
+			assertTrue(index, index.contains("<loc>http://example.org/sitemap-" + artifactId + ".xml</loc>"));
+		}
+		assertEquals(index, 3, index.split("<loc>").length - 1);
+
+		// The start page of the parent is only listed by the first module
+		final String parentSitemap = read(new File(site, "sitemap-parent.xml"));
+		assertTrue(parentSitemap, parentSitemap.contains("<loc>http://example.org/parent.html</loc>"));
+		assertTrue(parentSitemap, parentSitemap.contains("<loc>http://example.org/index.html</loc>"));
+		assertEquals(parentSitemap, 2, parentSitemap.split("<loc>").length - 1);
+
+		// Modules without site descriptor get the menus of their own decoration model
+		for (final String artifactId : Arrays.asList("a", "b")) {
+			final String sitemap = read(new File(site, "sitemap-" + artifactId + ".xml"));
+			assertTrue(sitemap, sitemap.contains("<loc>http://example.org/" + artifactId + "/" + artifactId + ".html</loc>"));
+			assertEquals(sitemap, 1, sitemap.split("<loc>").length - 1);
+		}
+	}
+
+}
@@ -0,0 +1,42 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CompactUrlSetTest {
+
+	@Test
+	public void testAdd() {
+		final CompactUrlSet set = new CompactUrlSet();
+		assertTrue(set.add("http://example.org/index.html"));
+		assertTrue(set.add("http://example.org/download.html"));
+		assertTrue(set.add("http://example.org/über/日本.html"));
+		assertFalse(set.add("http://example.org/index.html"));
+		assertFalse(set.add("http://example.org/über/日本.html"));
+		assertEquals(3, set.size());
+	}
+
+	@Test
+	public void testManyUrls() {
+		final CompactUrlSet set = new CompactUrlSet();
+		for (int i = 0; i < 200000; i++) {
+			assertTrue(set.add("http://example.org/page" + i + ".html"));
+		}
+		for (int i = 0; i < 200000; i += 7) {
+			assertFalse(set.add("http://example.org/page" + i + ".html"));
+		}
+		assertEquals(200000, set.size());
+	}
+
+	@Test
+	public void testNormalize() {
+		assertEquals("http://example.org/index.html", NormalizingUrlSink.normalize("http://example.org/./index.html"));
+		assertEquals("http://example.org/index.html", NormalizingUrlSink.normalize("http://example.org/module/../index.html"));
+		assertEquals("http://example.org/Index.html", NormalizingUrlSink.normalize("HTTP://Example.ORG/Index.html#top"));
+		assertEquals("http://example.org/", NormalizingUrlSink.normalize("http://example.org"));
+	}
+
+}
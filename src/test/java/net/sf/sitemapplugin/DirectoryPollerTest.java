@@ -0,0 +1,58 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DirectoryPollerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPoll() throws IOException {
+		final File site = folder.newFolder("site");
+		final File descriptor = new File(site, "site.xml");
+		FileUtils.fileWrite(descriptor, "UTF-8", "<project/>");
+		final File apt = new File(site, "apt");
+		apt.mkdirs();
+		final File index = new File(apt, "index.apt");
+		FileUtils.fileWrite(index, "UTF-8", "Index");
+
+		final DirectoryPoller poller = new DirectoryPoller(site);
+		assertTrue(poller.poll().isEmpty());
+
+		FileUtils.fileWrite(descriptor, "UTF-8", "<project name=\"changed\"/>");
+		assertEquals(Collections.singletonList("site.xml"), poller.poll());
+		assertTrue(poller.poll().isEmpty());
+
+		index.setLastModified(index.lastModified() - 10000L);
+		final File fr = new File(site, "fr/apt");
+		fr.mkdirs();
+		FileUtils.fileWrite(new File(fr, "index.apt"), "UTF-8", "Index");
+		descriptor.delete();
+		final String[] changed = poller.poll().toArray(new String[0]);
+		Arrays.sort(changed);
+		assertEquals(Arrays.asList("apt/index.apt", "fr/apt/index.apt", "site.xml"), Arrays.asList(changed));
+
+		// A second older and 31000 bytes longer, which gave the same value as long as both were packed into one
+		FileUtils.fileWrite(index, "UTF-8", "Index");
+		index.setLastModified(1000000L);
+		poller.poll();
+		final char[] longer = new char[31005];
+		Arrays.fill(longer, 'x');
+		FileUtils.fileWrite(index, "UTF-8", new String(longer));
+		index.setLastModified(999000L);
+		assertEquals(Collections.singletonList("apt/index.apt"), poller.poll());
+	}
+
+}
@@ -0,0 +1,78 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PersistentDecorationModelCacheTest {
+
+	private static DecorationModel createModel() {
+		final MenuItem item = new MenuItem();
+		item.setName("Download");
+		item.setHref("download.html");
+		final Menu menu = new Menu();
+		menu.setName("Overview");
+		menu.addItem(item);
+		final DecorationModel model = new DecorationModel();
+		model.addMenu(menu);
+		return model;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCorruptEntry() throws IOException {
+		final File directory = folder.newFolder("cache");
+		final File entry = new File(directory, "0123.xml");
+		FileUtils.fileWrite(entry, "UTF-8", "<project><menu>");
+
+		final PersistentDecorationModelCache cache = new PersistentDecorationModelCache(directory);
+		assertNull(cache.get("0123"));
+		assertFalse(entry.exists());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void testPrune() throws IOException {
+		final File directory = folder.newFolder("cache");
+		final PersistentDecorationModelCache cache = new PersistentDecorationModelCache(directory);
+		cache.put("old", createModel());
+		cache.put("new", createModel());
+		new File(directory, "old.xml").setLastModified(System.currentTimeMillis() - 2 * PersistentDecorationModelCache.MAX_AGE);
+
+		assertEquals(1, cache.prune(PersistentDecorationModelCache.MAX_AGE));
+		assertNull(cache.get("old"));
+		assertNotNull(cache.get("new"));
+	}
+
+	@Test
+	public void testPutAndGet() throws IOException {
+		final File directory = new File(folder.getRoot(), "not/yet/created");
+		final PersistentDecorationModelCache cache = new PersistentDecorationModelCache(directory);
+		assertNull(cache.get("0123"));
+		cache.put("0123", createModel());
+
+		// A second build reads the entry
+		final PersistentDecorationModelCache other = new PersistentDecorationModelCache(directory);
+		final DecorationModel model = other.get("0123");
+		assertNotNull(model);
+		assertEquals("Overview", model.getMenus().get(0).getName());
+		assertEquals("download.html", model.getMenus().get(0).getItems().get(0).getHref());
+		assertEquals(1, other.getHits());
+		assertEquals(1, directory.list().length);
+	}
+
+}
@@ -0,0 +1,50 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SiteCrawlerTest {
+
+	private static void touch(final File dir, final String path) throws IOException {
+		final File file = new File(dir, path);
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCrawl() throws Exception {
+		final File site = folder.newFolder("site");
+		touch(site, "index.html");
+		touch(site, "css/site.css");
+		touch(site, "guide/usage.html");
+		touch(site, "guide/deep/nested/page.html");
+		touch(site, "apidocs/index.html");
+		touch(site, "xref/Foo.html");
+
+		final SiteCrawler crawler = new SiteCrawler(site, Collections.singletonList("**/*.html"), Arrays.asList("apidocs/**",
+				"xref/*.html"), 4);
+		final List<String> pages = new ArrayList<String>(crawler.crawl().keySet());
+		assertEquals(Arrays.asList("guide/deep/nested/page.html", "guide/usage.html", "index.html"), pages);
+	}
+
+	@Test
+	public void testMissingDirectory() throws Exception {
+		final SiteCrawler crawler = new SiteCrawler(new File(folder.getRoot(), "missing"), Collections.singletonList("**/*.html"),
+				Collections.<String> emptyList(), 2);
+		assertEquals(0, crawler.crawl().size());
+	}
+
+}
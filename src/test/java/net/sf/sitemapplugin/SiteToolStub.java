@@ -0,0 +1,59 @@
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.doxia.tools.SiteToolException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * A site tool without inheritance, interpolation or skins. It knows the locales of a comma separated list and gets the
+ * decoration models from the subclass.
+ */
+public abstract class SiteToolStub implements InvocationHandler {
+
+	/**
+	 * Creates the site tool, which delegates to this stub.
+	 */
+	public final SiteTool create() {
+		return (SiteTool) Proxy.newProxyInstance(SiteTool.class.getClassLoader(), new Class<?>[] { SiteTool.class }, this);
+	}
+
+	/**
+	 * Gets the decoration model of a project.
+	 */
+	protected abstract DecorationModel getDecorationModel(MavenProject project, Locale locale) throws SiteToolException;
+
+	/**
+	 * Gets the site descriptor of a project, which is {@code src/site/site_<locale>.xml} unless overridden.
+	 */
+	protected File getSiteDescriptor(final File basedir, final Locale locale) {
+		return new File(basedir, "src/site/site_" + locale + ".xml");
+	}
+
+	@Override
+	public final Object invoke(final Object proxy, final Method method, final Object[] args) throws SiteToolException {
+		if (method.getName().equals("getAvailableLocales")) {
+			final List<Locale> locales = new ArrayList<Locale>();
+			for (final String language : ((String) args[0]).split(",")) {
+				locales.add(new Locale(language));
+			}
+			return locales;
+		} else if (method.getName().equals("getRelativePath")) {
+			return "src/site";
+		} else if (method.getName().equals("getSiteDescriptorFromBasedir")) {
+			return getSiteDescriptor((File) args[1], (Locale) args[2]);
+		} else if (method.getName().equals("getDecorationModel")) {
+			return getDecorationModel((MavenProject) args[0], (Locale) args[5]);
+		}
+		throw new UnsupportedOperationException(method.getName());
+	}
+
+}
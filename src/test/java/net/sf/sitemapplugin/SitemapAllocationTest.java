@@ -0,0 +1,107 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.project.MavenProject;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class SitemapAllocationTest {
+
+	private static final class CountingSink implements UrlSink {
+
+		private int count;
+
+		@Override
+		public void add(final SitemapUrl url) {
+			count++;
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	private static final int URLS = 100000;
+
+	private static long getAllocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static boolean isAllocationMeasurable() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		return bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled();
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDeeplyNestedMenu() throws IOException {
+		final Menu menu = new Menu();
+		MenuItem parent = new MenuItem();
+		parent.setHref("level0.html");
+		menu.addItem(parent);
+		for (int i = 1; i < 20000; i++) {
+			final MenuItem item = new MenuItem();
+			item.setHref("level" + i + ".html");
+			parent.addItem(item);
+			parent = item;
+		}
+		final DecorationModel model = new DecorationModel();
+		model.addMenu(menu);
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org");
+
+		final CountingSink sink = new CountingSink();
+		new Sitemap("UTF-8", null).generate(project, model, sink, ChangeFreq.WEEKLY);
+
+		assertEquals(20000, sink.count);
+	}
+
+	@Test
+	public void testWriterAllocationPerUrl() throws IOException {
+		Assume.assumeTrue(isAllocationMeasurable());
+
+		final SitemapUrl[] urls = new SitemapUrl[URLS];
+		for (int i = 0; i < URLS; i++) {
+			urls[i] = new SitemapUrl("http://example.org/module/page" + i + ".html", 1000000L + i % 16, ChangeFreq.DAILY);
+		}
+		final StreamingSitemapWriter warmUp = new StreamingSitemapWriter("http://example.org", folder.newFolder("warm-up"),
+				"sitemap");
+		write(warmUp, urls);
+		warmUp.finish();
+
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org", folder.newFolder("measured"),
+				"sitemap");
+		final long before = getAllocatedBytes();
+		write(writer, urls);
+		final long allocated = getAllocatedBytes() - before;
+		writer.finish();
+
+		assertTrue("allocated " + allocated / URLS + " bytes per URL", allocated / URLS < 64);
+	}
+
+	private void write(final StreamingSitemapWriter writer, final SitemapUrl[] urls) throws IOException {
+		for (final SitemapUrl url : urls) {
+			writer.add(url);
+		}
+	}
+
+}
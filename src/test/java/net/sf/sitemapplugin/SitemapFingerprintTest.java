@@ -0,0 +1,129 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SitemapFingerprintTest {
+
+	private static SitemapFingerprint create(final String url, final String pages) {
+		final SitemapFingerprint fingerprint = new SitemapFingerprint();
+		fingerprint.putValue("url", url);
+		if (pages != null) {
+			fingerprint.putValue("pages", pages);
+		}
+		return fingerprint;
+	}
+
+	private static Menu menu(final String name, final String href) {
+		final MenuItem item = new MenuItem();
+		item.setName(name);
+		item.setHref(href);
+		final Menu menu = new Menu();
+		menu.setName("Pages");
+		menu.addItem(item);
+		return menu;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAddedAndRemovedInputs() {
+		final SitemapFingerprint withPages = create("http://example.org/", "a");
+		final SitemapFingerprint withoutPages = create("http://example.org/", null);
+		assertEquals(Collections.singletonList("pages"), withoutPages.getChangedInputs(withPages));
+		assertEquals(Collections.singletonList("pages"), withPages.getChangedInputs(withoutPages));
+		assertFalse(withPages.getHash().equals(withoutPages.getHash()));
+	}
+
+	@Test
+	public void testChangedInputs() {
+		final SitemapFingerprint previous = create("http://example.org/", "a");
+		assertTrue(create("http://example.org/", "a").getChangedInputs(previous).isEmpty());
+		assertEquals(create("http://example.org/", "a").getHash(), previous.getHash());
+		assertEquals(Arrays.asList("url", "pages"), create("http://example.com/", "b").getChangedInputs(previous));
+	}
+
+	@Test
+	public void testMenus() {
+		final SitemapFingerprint previous = new SitemapFingerprint();
+		previous.putMenus("menus", Collections.singletonList(menu("Guide", "guide.html")));
+		final SitemapFingerprint renamed = new SitemapFingerprint();
+		renamed.putMenus("menus", Collections.singletonList(menu("Guides", "guide.html")));
+		final SitemapFingerprint same = new SitemapFingerprint();
+		same.putMenus("menus", Collections.singletonList(menu("Guide", "guide.html")));
+		assertEquals(Collections.singletonList("menus"), renamed.getChangedInputs(previous));
+		assertTrue(same.getChangedInputs(previous).isEmpty());
+	}
+
+	@Test
+	public void testPaths() {
+		final SitemapFingerprint previous = new SitemapFingerprint();
+		previous.putPaths("pages", Arrays.asList("Aa.html", "index.html"));
+		final SitemapFingerprint renamed = new SitemapFingerprint();
+		renamed.putPaths("pages", Arrays.asList("BB.html", "index.html"));
+		final SitemapFingerprint reordered = new SitemapFingerprint();
+		reordered.putPaths("pages", new TreeSet<String>(Arrays.asList("index.html", "Aa.html")));
+		assertEquals(Collections.singletonList("pages"), renamed.getChangedInputs(previous));
+		assertTrue(reordered.getChangedInputs(previous).isEmpty());
+	}
+
+	@Test
+	public void testStoreAndLoad() throws IOException {
+		final File descriptor = folder.newFile("site.xml");
+		FileUtils.fileWrite(descriptor, "UTF-8", "<project/>");
+		final SitemapFingerprint fingerprint = create("http://example.org/", "a");
+		fingerprint.putFile("descriptor", descriptor);
+		final File file = new File(folder.getRoot(), "sitemap/fingerprint-en.properties");
+		fingerprint.store(file);
+
+		assertNull(SitemapFingerprint.load(new File(folder.getRoot(), "missing.properties")));
+		final SitemapFingerprint loaded = SitemapFingerprint.load(file);
+		assertTrue(fingerprint.getChangedInputs(loaded).isEmpty());
+
+		FileUtils.fileWrite(descriptor, "UTF-8", "<project name=\"Changed\"/>");
+		final SitemapFingerprint changed = create("http://example.org/", "a");
+		changed.putFile("descriptor", descriptor);
+		assertEquals(Collections.singletonList("descriptor"), changed.getChangedInputs(loaded));
+	}
+
+	@Test
+	public void testTimestamps() {
+		// "Aa" and "BB" have the same hash code, so swapping their times does not change the hash code of the map
+		final Map<String, Long> previousTimes = new HashMap<String, Long>();
+		previousTimes.put("Aa", Long.valueOf(1000L));
+		previousTimes.put("BB", Long.valueOf(2000L));
+		final Map<String, Long> swappedTimes = new HashMap<String, Long>();
+		swappedTimes.put("Aa", Long.valueOf(2000L));
+		swappedTimes.put("BB", Long.valueOf(1000L));
+		assertEquals(previousTimes.hashCode(), swappedTimes.hashCode());
+
+		final SitemapFingerprint previous = new SitemapFingerprint();
+		previous.putTimestamps("sources", previousTimes);
+		final SitemapFingerprint swapped = new SitemapFingerprint();
+		swapped.putTimestamps("sources", swappedTimes);
+		final SitemapFingerprint same = new SitemapFingerprint();
+		same.putTimestamps("sources", new TreeMap<String, Long>(previousTimes));
+		assertEquals(Collections.singletonList("sources"), swapped.getChangedInputs(previous));
+		assertTrue(same.getChangedInputs(previous).isEmpty());
+	}
+
+}
@@ -0,0 +1,59 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.sf.sitemapplugin.SitemapMetrics.Phase;
+
+public class SitemapMetricsTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCounters() throws IOException {
+		final File first = folder.newFile("sitemap1.xml");
+		FileUtils.fileWrite(first, "UTF-8", "12345");
+		final File second = folder.newFile("sitemap2.xml");
+		FileUtils.fileWrite(second, "UTF-8", "123");
+		final File index = folder.newFile("sitemap_index.xml");
+		FileUtils.fileWrite(index, "UTF-8", "12");
+
+		final SitemapMetrics metrics = new SitemapMetrics();
+		metrics.addWritten(7, Arrays.asList(first, second), index);
+		metrics.addWritten(3, Arrays.asList(first), new File(folder.getRoot(), "deleted_index.xml"));
+		metrics.addTimeNanos(Phase.WRITE, 2000000L);
+		metrics.addTimeNanos(Phase.WRITE, 500000L);
+
+		assertEquals(10L, metrics.getUrls());
+		assertEquals(3L, metrics.getShards());
+		assertEquals(15L, metrics.getTotalBytes());
+		assertEquals(2500000L, metrics.getTimeNanos(Phase.WRITE));
+		assertTrue(metrics.getSummary(), metrics.getSummary().contains("write 2.500 ms"));
+	}
+
+	@Test
+	public void testStore() throws IOException {
+		final SitemapMetrics metrics = new SitemapMetrics();
+		metrics.addTimeNanos(Phase.EXTRACTION, 1234567L);
+		final File file = new File(folder.getRoot(), "sitemap/metrics.json");
+		metrics.store(file);
+
+		final String json = FileUtils.fileRead(file, "UTF-8");
+		assertTrue(json, json.contains("\"extraction\": 1.235"));
+		assertTrue(json, json.contains("\"decorationModel\": 0.000"));
+		assertTrue(json, json.contains("\"urls\": 0"));
+		assertTrue(json, json.contains("\"totalBytes\": 0"));
+		assertTrue(json, json.startsWith("{") && json.trim().endsWith("}"));
+	}
+
+}
@@ -0,0 +1,164 @@
+package net.sf.sitemapplugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.doxia.tools.SiteTool;
+import org.apache.maven.model.Build;
+import org.apache.maven.plugin.testing.AbstractMojoTestCase;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.IOUtil;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Runs the sitemap goal of many modules at the same time, like a parallel build ({@code mvn -T}) does.
+ */
+@RunWith(JUnit4.class)
+public class SitemapMojoConcurrencyTest extends AbstractMojoTestCase {
+
+	private static final int MODULES = 16;
+
+	/**
+	 * Creates a site tool which has a single page per locale.
+	 */
+	private static SiteTool createSiteTool() {
+		return new SiteToolStub() {
+			@Override
+			protected DecorationModel getDecorationModel(final MavenProject project, final Locale locale) {
+				final MenuItem item = new MenuItem();
+				item.setHref("index-" + locale.getLanguage() + ".html");
+				final Menu menu = new Menu();
+				menu.addItem(item);
+				final DecorationModel model = new DecorationModel();
+				model.addMenu(menu);
+				return model;
+			}
+		}.create();
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private SitemapMojo createMojo(final File basedir, final String url, final String locales) throws Exception {
+		final Build build = new Build();
+		build.setDirectory(new File(basedir, "target").getPath());
+		final MavenProject project = new MavenProject();
+		project.setFile(new File(basedir, "pom.xml"));
+		project.setBuild(build);
+		project.setUrl(url);
+
+		final SitemapMojo mojo = new SitemapMojo();
+		setVariableValueToObject(mojo, "project", project);
+		setVariableValueToObject(mojo, "siteTool", createSiteTool());
+		setVariableValueToObject(mojo, "locales", locales);
+		setVariableValueToObject(mojo, "siteDirectory", new File(basedir, "src/site"));
+		setVariableValueToObject(mojo, "generatedSiteDirectory", new File(basedir, "target/generated-site"));
+		setVariableValueToObject(mojo, "outputDirectory", new File(basedir, "target/site"));
+		setVariableValueToObject(mojo, "changeFreq", "monthly");
+		setVariableValueToObject(mojo, "descriptorOnly", Boolean.TRUE);
+		return mojo;
+	}
+
+	private String read(final File file) throws IOException {
+		assertTrue(file + " is missing", file.isFile());
+		return FileUtils.fileRead(file, "UTF-8");
+	}
+
+	private byte[] readBytes(final File file) throws IOException {
+		assertTrue(file + " is missing", file.isFile());
+		final InputStream in = new FileInputStream(file);
+		try {
+			return IOUtil.toByteArray(in);
+		} finally {
+			IOUtil.close(in);
+		}
+	}
+
+	@Before
+	public void setup() throws Exception {
+		super.setUp();
+	}
+
+	@Test
+	public void testLocalesInParallel() throws Exception {
+		final String locales = "en,de,fr,it,es,nl";
+		final SitemapMojo sequential = createMojo(folder.newFolder("sequential"), "http://example.org/", locales);
+		sequential.execute();
+		final SitemapMojo concurrent = createMojo(folder.newFolder("concurrent"), "http://example.org/", locales);
+		setVariableValueToObject(concurrent, "threads", Integer.valueOf(4));
+		concurrent.execute();
+
+		final File sequentialSite = new File(folder.getRoot(), "sequential/target/site");
+		final File concurrentSite = new File(folder.getRoot(), "concurrent/target/site");
+		for (final String language : locales.split(",")) {
+			final String path = language.equals("en") ? Sitemap.FILE_NAME : language + "/" + Sitemap.FILE_NAME;
+			final String sitemap = read(new File(concurrentSite, path));
+			assertTrue(sitemap, sitemap.contains("<loc>http://example.org/index-" + language + ".html</loc>"));
+			assertTrue(path, Arrays.equals(readBytes(new File(sequentialSite, path)), readBytes(new File(concurrentSite, path))));
+		}
+	}
+
+	@Test
+	public void testModulesInParallel() throws Exception {
+		final Locale defaultLocale = Locale.getDefault();
+		final ExecutorService executor = Executors.newFixedThreadPool(MODULES / 2);
+		try {
+			final CountDownLatch start = new CountDownLatch(1);
+			final List<Future<Object>> results = new ArrayList<Future<Object>>();
+			for (int i = 0; i < MODULES; i++) {
+				// Half of the modules have another default locale
+				final SitemapMojo mojo = createMojo(folder.newFolder("module" + i), "http://example.org/module" + i + "/",
+						i % 2 == 0 ? "en,de" : "de,en");
+				results.add(executor.submit(new Callable<Object>() {
+					@Override
+					public Object call() throws Exception {
+						start.await();
+						mojo.execute();
+						return null;
+					}
+				}));
+			}
+			start.countDown();
+			for (final Future<Object> result : results) {
+				result.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		for (int i = 0; i < MODULES; i++) {
+			final String url = "http://example.org/module" + i + "/";
+			final String first = i % 2 == 0 ? "en" : "de";
+			final String second = i % 2 == 0 ? "de" : "en";
+			final File site = new File(folder.getRoot(), "module" + i + "/target/site");
+			final String sitemap = read(new File(site, Sitemap.FILE_NAME));
+			assertTrue(sitemap, sitemap.contains("<loc>" + url + "index-" + first + ".html</loc>"));
+			assertEquals(sitemap, 1, sitemap.split("<loc>").length - 1);
+			final String localized = read(new File(site, second + "/" + Sitemap.FILE_NAME));
+			assertTrue(localized, localized.contains("<loc>" + url + "index-" + second + ".html</loc>"));
+			assertEquals(localized, 1, localized.split("<loc>").length - 1);
+		}
+		assertEquals(defaultLocale, Locale.getDefault());
+	}
+
+}
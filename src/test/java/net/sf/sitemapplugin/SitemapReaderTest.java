@@ -0,0 +1,119 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class SitemapReaderTest {
+
+	private static final class CollectingSink implements UrlSink {
+
+		private final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+
+		@Override
+		public void add(final SitemapUrl url) {
+			urls.add(url);
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	/**
+	 * 2011-07-04T00:00:00Z, a day as the default date format of the writer only keeps the day.
+	 */
+	private static final long DAY = 1309737600000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testInvalidEntry() throws IOException {
+		final File file = folder.newFile(Sitemap.FILE_NAME);
+		FileUtils.fileWrite(file, "UTF-8", "<urlset xmlns=\"http://www.sitemaps.org/schemas/sitemap/0.9\"><url>"
+				+ "<loc>http://example.org/</loc><lastmod>yesterday</lastmod></url></urlset>");
+		try {
+			new SitemapReader().read(file, new CollectingSink());
+			fail("Read an invalid date");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("'yesterday' is not a W3C datetime"));
+		}
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+		final File dir = folder.newFolder("merge");
+		final StreamingSitemapWriter previous = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		previous.add(new SitemapUrl("http://example.org/v1/index.html", DAY, ChangeFreq.MONTHLY));
+		previous.add(new SitemapUrl("http://example.org/index.html", DAY, ChangeFreq.MONTHLY));
+		previous.finish();
+		final File copy = new File(folder.getRoot(), "copy.xml");
+		FileUtils.copyFile(new File(dir, Sitemap.FILE_NAME), copy);
+
+		// The fresh URLs come first, so that they win over the existing entries
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		final NormalizingUrlSink sink = new NormalizingUrlSink(new CompactUrlSet(), writer);
+		sink.add(new SitemapUrl("http://example.org/index.html", DAY + 86400000L, ChangeFreq.WEEKLY));
+		sink.add(new SitemapUrl("http://example.org/v2/index.html", DAY + 86400000L, ChangeFreq.WEEKLY));
+		assertEquals(2, new SitemapReader().read(copy, sink));
+		sink.finish();
+
+		final CollectingSink merged = new CollectingSink();
+		new SitemapReader().read(new File(dir, Sitemap.FILE_NAME), merged);
+		assertEquals(3, merged.urls.size());
+		assertEquals(new SitemapUrl("http://example.org/index.html", DAY + 86400000L, ChangeFreq.WEEKLY), merged.urls.get(0));
+		assertEquals(new SitemapUrl("http://example.org/v2/index.html", DAY + 86400000L, ChangeFreq.WEEKLY), merged.urls.get(1));
+		assertEquals(new SitemapUrl("http://example.org/v1/index.html", DAY, ChangeFreq.MONTHLY), merged.urls.get(2));
+		assertEquals(1, sink.getDuplicateCount());
+	}
+
+	@Test
+	public void testShardsAndAlternates() throws IOException {
+		final File dir = folder.newFolder("shards");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		writer.setCompressionLevel(6);
+		final Map<String, String> alternates = new LinkedHashMap<String, String>();
+		alternates.put("en", "http://example.org/page0.html");
+		alternates.put("de", "http://example.org/de/page0.html");
+		final SitemapUrl first = new SitemapUrl("http://example.org/page0.html", DAY, ChangeFreq.DAILY, Double.valueOf(0.8), alternates);
+		writer.add(first);
+		final int urls = StreamingSitemapWriter.MAX_URLS + 10;
+		for (int i = 1; i < urls; i++) {
+			writer.add(new SitemapUrl("http://example.org/page" + i + ".html", 0L, null));
+		}
+		writer.finish();
+
+		final SitemapReader reader = new SitemapReader();
+		final List<String> locations = reader.readIndex(new File(dir, Sitemap.INDEX_FILE_NAME));
+		assertEquals(2, locations.size());
+		final CollectingSink sink = new CollectingSink();
+		int read = 0;
+		for (final String location : locations) {
+			final File file = new File(dir, location.substring(location.lastIndexOf('/') + 1));
+			assertTrue(file.getName(), file.getName().endsWith(".xml.gz"));
+			read += reader.read(file, sink);
+		}
+		assertEquals(urls, read);
+		assertEquals(first, sink.urls.get(0));
+		assertEquals(new SitemapUrl("http://example.org/page1.html", 0L, null), sink.urls.get(1));
+		assertEquals(new SitemapUrl("http://example.org/page" + (urls - 1) + ".html", 0L, null), sink.urls.get(urls - 1));
+	}
+
+}
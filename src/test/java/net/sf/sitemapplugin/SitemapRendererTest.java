@@ -0,0 +1,112 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.junit.Test;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class SitemapRendererTest {
+
+	private static List<SitemapUrl> createUrls(final int count) {
+		final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+		for (int i = 0; i < count; i++) {
+			urls.add(new SitemapUrl("http://example.org/page" + i + ".html", 0L, null));
+		}
+		return urls;
+	}
+
+	private static String read(final RenderedSitemap sitemap) throws Exception {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		sitemap.writeTo(out);
+		assertEquals(sitemap.getLength(), out.size());
+		return out.toString("UTF-8");
+	}
+
+	@Test
+	public void testChangedShardIsRenderedAgain() throws Exception {
+		final SitemapRenderer renderer = new SitemapRenderer("http://example.org");
+		final List<SitemapUrl> urls = createUrls(StreamingSitemapWriter.MAX_URLS * 2 + 10);
+		assertEquals(3, renderer.update(urls));
+		final RenderedSitemap first = renderer.get("sitemap1.xml");
+		final RenderedSitemap second = renderer.get("sitemap2.xml");
+		final RenderedSitemap third = renderer.get("sitemap3.xml");
+		final RenderedSitemap index = renderer.getRoot();
+		assertEquals(Sitemap.INDEX_FILE_NAME, index.getName());
+		assertTrue(read(index).contains("<loc>http://example.org/sitemap3.xml</loc>"));
+
+		assertEquals(0, renderer.update(urls));
+		assertSame(index, renderer.getRoot());
+
+		// A changed page only affects its own shard
+		urls.set(StreamingSitemapWriter.MAX_URLS + 5, new SitemapUrl("http://example.org/changed.html", 0L, ChangeFreq.DAILY));
+		assertEquals(1, renderer.update(urls));
+		assertSame(first, renderer.get("sitemap1.xml"));
+		final RenderedSitemap changed = renderer.get("sitemap2.xml");
+		assertNotSame(second, changed);
+		assertTrue(!second.getETag().equals(changed.getETag()));
+		assertTrue(read(changed).contains("<loc>http://example.org/changed.html</loc>"));
+		assertSame(third, renderer.get("sitemap3.xml"));
+		assertNotSame(index, renderer.getRoot());
+
+		// A page added to the full second shard spills into a new shard instead of moving the third one
+		urls.add(StreamingSitemapWriter.MAX_URLS + 5, new SitemapUrl("http://example.org/new.html", 0L, null));
+		assertEquals(2, renderer.update(urls));
+		assertSame(first, renderer.get("sitemap1.xml"));
+		assertEquals(1, renderer.get("sitemap3.xml").getUrls().size());
+		assertEquals(third.getETag(), renderer.get("sitemap4.xml").getETag());
+		assertEquals(third.getLastModified(), renderer.get("sitemap4.xml").getLastModified());
+	}
+
+	@Test
+	public void testMenu() throws Exception {
+		final MenuItem item = new MenuItem();
+		item.setHref("index.html");
+		final Menu menu = new Menu();
+		menu.addItem(item);
+		final DecorationModel model = new DecorationModel();
+		model.addMenu(menu);
+
+		final SitemapRenderer renderer = new SitemapRenderer("http://example.org/");
+		assertEquals(1, renderer.update(model, ChangeFreq.WEEKLY));
+		final RenderedSitemap sitemap = renderer.getRoot();
+		assertEquals(Sitemap.FILE_NAME, sitemap.getName());
+		assertTrue(read(sitemap).contains("<loc>http://example.org/index.html</loc>"));
+
+		// The pages keep their modification time, so an unchanged menu renders nothing
+		Thread.sleep(5);
+		assertEquals(0, renderer.update(model, ChangeFreq.WEEKLY));
+		assertSame(sitemap, renderer.getRoot());
+	}
+
+	@Test
+	public void testSink() throws Exception {
+		final SitemapRenderer renderer = new SitemapRenderer("http://example.org/");
+		assertNull(renderer.getRoot());
+		renderer.add(new SitemapUrl("http://example.org/a.html?x=1&y=2", 0L, ChangeFreq.MONTHLY));
+		assertNull(renderer.getRoot());
+		renderer.finish();
+
+		final RenderedSitemap sitemap = renderer.get(Sitemap.FILE_NAME);
+		final String content = read(sitemap);
+		assertTrue(content.contains("<loc>http://example.org/a.html?x=1&amp;y=2</loc>"));
+		assertTrue(content.endsWith("</urlset>"));
+		assertTrue(sitemap.getETag().startsWith("\""));
+		assertEquals(1, renderer.getSitemaps().size());
+
+		renderer.finish();
+		assertNull(renderer.getRoot());
+	}
+
+}
@@ -0,0 +1,195 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.apache.maven.doxia.site.decoration.DecorationModel;
+import org.apache.maven.doxia.site.decoration.Menu;
+import org.apache.maven.doxia.site.decoration.MenuItem;
+import org.apache.maven.project.MavenProject;
+import org.junit.Rule;
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class SitemapTest {
+
+	private static final class CollectingSink implements UrlSink {
+
+		private final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+
+		@Override
+		public void add(final SitemapUrl url) {
+			urls.add(url);
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	private static DecorationModel createModel(final String... hrefs) {
+		final Menu menu = new Menu();
+		for (final String href : hrefs) {
+			final MenuItem item = new MenuItem();
+			item.setHref(href);
+			menu.addItem(item);
+		}
+		final DecorationModel model = new DecorationModel();
+		model.addMenu(menu);
+		return model;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testGenerateAlternates() throws IOException {
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org");
+		final Map<Locale, DecorationModel> models = new LinkedHashMap<Locale, DecorationModel>();
+		models.put(Locale.ENGLISH, createModel("index.html", "download.html"));
+		models.put(Locale.GERMAN, createModel("./index.html", "impressum.html"));
+
+		final CollectingSink sink = new CollectingSink();
+		new Sitemap("UTF-8", null).generateAlternates(project, models, sink, ChangeFreq.WEEKLY);
+
+		assertEquals(4, sink.urls.size());
+		final SitemapUrl english = sink.urls.get(0);
+		assertEquals("http://example.org/index.html", english.getLocation());
+		final SitemapUrl german = sink.urls.get(1);
+		assertEquals("http://example.org/de/index.html", german.getLocation());
+		assertEquals(english.getAlternates(), german.getAlternates());
+		assertEquals("http://example.org/index.html", english.getAlternates().get("en"));
+		assertEquals("http://example.org/de/index.html", english.getAlternates().get("de"));
+		assertEquals("http://example.org/index.html", english.getAlternates().get("x-default"));
+
+		// Pages without translations
+		assertEquals("http://example.org/download.html", sink.urls.get(2).getLocation());
+		assertTrue(sink.urls.get(2).getAlternates().isEmpty());
+		assertEquals("http://example.org/de/impressum.html", sink.urls.get(3).getLocation());
+		assertTrue(sink.urls.get(3).getAlternates().isEmpty());
+	}
+
+	@Test
+	public void testInvalidUrlReportsMenuPath() throws IOException {
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org");
+		final DecorationModel model = createModel("index.html");
+		final Menu menu = model.getMenus().get(0);
+		menu.setName("Project");
+		final MenuItem parent = new MenuItem();
+		parent.setName("Downloads");
+		parent.setHref("download.html");
+		final MenuItem child = new MenuItem();
+		child.setName("Mirror");
+		child.setHref("http://mirror.example.com/");
+		parent.addItem(child);
+		menu.addItem(parent);
+
+		final File dir = folder.newFolder("invalid");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setStreamingValidation(true);
+		try {
+			new Sitemap("UTF-8", null).generate(project, model, writer, ChangeFreq.WEEKLY);
+			fail("Accepted a URL of another host");
+		} catch (final InvalidSitemapUrlException e) {
+			assertEquals("http://mirror.example.com/", e.getLocation());
+			assertEquals("Project > Downloads > Mirror", e.getMenuPath());
+		}
+
+		// A sorting sink only writes the URLs when it is finished, so they are checked before they are buffered
+		final SortingUrlSink sorter = new SortingUrlSink(folder.newFolder("work"), Long.MAX_VALUE, writer);
+		try {
+			new Sitemap("UTF-8", null).generate(project, model, new CheckingUrlSink(writer, sorter), ChangeFreq.WEEKLY);
+			fail("Accepted a URL of another host");
+		} catch (final InvalidSitemapUrlException e) {
+			assertEquals("Project > Downloads > Mirror", e.getMenuPath());
+		}
+		assertEquals(2, sorter.getUrlCount());
+	}
+
+	@Test
+	public void testGenerateUrls() throws IOException {
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org/");
+		final File list = folder.newFile("urls.csv");
+		FileUtils.fileWrite(list, "UTF-8", "\ufeffloc,lastmod,changefreq,priority\r\n" + "http://example.org/a.html\r\n"
+				+ "# comment\n\n" + "/b.html,2011-07-04,daily,0.8\n" + "\"c.html?x=1,2\",2011-07-04T12:30:00+02:00,,1\n"
+				+ "d.html,2011-07-04T10:30:00.5Z,NEVER");
+
+		final CollectingSink sink = new CollectingSink();
+		new Sitemap("UTF-8", null).generateUrls(project, list, sink, ChangeFreq.WEEKLY);
+
+		assertEquals(4, sink.urls.size());
+		final SitemapUrl plain = sink.urls.get(0);
+		assertEquals("http://example.org/a.html", plain.getLocation());
+		assertEquals(0L, plain.getLastModified());
+		assertEquals(ChangeFreq.WEEKLY, plain.getChangeFreq());
+		assertNull(plain.getPriority());
+		final SitemapUrl columns = sink.urls.get(1);
+		assertEquals("http://example.org/b.html", columns.getLocation());
+		assertEquals(1309737600000L, columns.getLastModified());
+		assertEquals(ChangeFreq.DAILY, columns.getChangeFreq());
+		assertEquals(Double.valueOf(0.8), columns.getPriority());
+		final SitemapUrl quoted = sink.urls.get(2);
+		assertEquals("http://example.org/c.html?x=1,2", quoted.getLocation());
+		assertEquals(1309775400000L, quoted.getLastModified());
+		assertEquals(ChangeFreq.WEEKLY, quoted.getChangeFreq());
+		assertEquals(Double.valueOf(1.0), quoted.getPriority());
+		assertEquals(1309775400500L, sink.urls.get(3).getLastModified());
+		assertEquals(ChangeFreq.NEVER, sink.urls.get(3).getChangeFreq());
+	}
+
+	@Test
+	public void testGenerateUrlsInvalidLine() throws IOException {
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org/");
+		final File list = folder.newFile("invalid.csv");
+		FileUtils.fileWrite(list, "UTF-8", "a.html\nb.html,,,1.5\n");
+		try {
+			new Sitemap("UTF-8", null).generateUrls(project, list, new CollectingSink(), ChangeFreq.WEEKLY);
+			fail("Accepted priority 1.5");
+		} catch (final IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith("Invalid line 2 of"));
+		}
+	}
+
+	@Test
+	public void testGenerateUrlsStreamsLongLists() throws IOException {
+		final MavenProject project = new MavenProject();
+		project.setUrl("http://example.org/");
+		final File list = folder.newFile("long.txt");
+		final StringBuilder content = new StringBuilder();
+		// Lines crossing the chunk boundaries, one of them longer than a chunk
+		for (int i = 0; i < 20000; i++) {
+			content.append("page").append(i).append(".html\n");
+		}
+		final char[] longPath = new char[100 * 1024];
+		Arrays.fill(longPath, 'x');
+		content.append(longPath).append('\n').append("last.html");
+		FileUtils.fileWrite(list, "UTF-8", content.toString());
+
+		final CollectingSink sink = new CollectingSink();
+		new Sitemap("UTF-8", null).generateUrls(project, list, sink, ChangeFreq.WEEKLY);
+		assertEquals(20002, sink.urls.size());
+		assertEquals("http://example.org/page12345.html", sink.urls.get(12345).getLocation());
+		assertEquals(longPath.length + "http://example.org/".length(), sink.urls.get(20000).getLocation().length());
+		assertEquals("http://example.org/last.html", sink.urls.get(20001).getLocation());
+	}
+
+}
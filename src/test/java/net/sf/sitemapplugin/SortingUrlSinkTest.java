@@ -0,0 +1,142 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class SortingUrlSinkTest {
+
+	private static final class CollectingSink implements UrlSink {
+
+		private boolean finished;
+
+		private final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+
+		@Override
+		public void add(final SitemapUrl url) {
+			urls.add(url);
+		}
+
+		@Override
+		public void finish() {
+			finished = true;
+		}
+
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<SitemapUrl> shuffledUrls(final int count, final long seed) {
+		final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+		for (int i = 0; i < count; i++) {
+			urls.add(new SitemapUrl("http://example.org/section" + i % 7 + "/page" + i + ".html", i * 1000L, ChangeFreq.values()[i
+					% ChangeFreq.values().length]));
+		}
+		Collections.shuffle(urls, new Random(seed));
+		return urls;
+	}
+
+	private List<SitemapUrl> sort(final List<SitemapUrl> urls, final long bufferSize, final File workDirectory) throws IOException {
+		final CollectingSink target = new CollectingSink();
+		final SortingUrlSink sink = new SortingUrlSink(workDirectory, bufferSize, target);
+		for (final SitemapUrl url : urls) {
+			sink.add(url);
+		}
+		sink.finish();
+		assertTrue(target.finished);
+		assertEquals(urls.size(), sink.getUrlCount());
+		return target.urls;
+	}
+
+	@Test
+	public void testAbort() throws IOException {
+		final File work = new File(folder.getRoot(), "work");
+		final CollectingSink target = new CollectingSink();
+		final SortingUrlSink sink = new SortingUrlSink(work, 10000L, target);
+		for (final SitemapUrl url : shuffledUrls(1000, 4L)) {
+			sink.add(url);
+		}
+		assertTrue(work.list().length > 0);
+		sink.abort();
+		assertEquals(0, work.list().length);
+		assertFalse(target.finished);
+		assertTrue(target.urls.isEmpty());
+
+		// After the sink finished there is nothing left to abort
+		final SortingUrlSink finished = new SortingUrlSink(work, 10000L, target);
+		for (final SitemapUrl url : shuffledUrls(1000, 5L)) {
+			finished.add(url);
+		}
+		finished.finish();
+		finished.abort();
+		assertEquals(1000, target.urls.size());
+		assertEquals(0, work.list().length);
+	}
+
+	@Test
+	public void testInMemory() throws IOException {
+		final File work = new File(folder.getRoot(), "work");
+		final List<SitemapUrl> sorted = sort(shuffledUrls(1000, 1L), Long.MAX_VALUE, work);
+		assertEquals(1000, sorted.size());
+		for (int i = 1; i < sorted.size(); i++) {
+			assertTrue(sorted.get(i - 1) + " " + sorted.get(i), sorted.get(i - 1).getLocation().compareTo(sorted.get(i).getLocation()) < 0);
+		}
+		assertFalse(work.exists());
+	}
+
+	@Test
+	public void testSpilled() throws IOException {
+		final File work = new File(folder.getRoot(), "work");
+		final List<SitemapUrl> inMemory = sort(shuffledUrls(20000, 2L), Long.MAX_VALUE, work);
+
+		// Runs of about 50 URLs need two merge passes
+		final CollectingSink target = new CollectingSink();
+		final SortingUrlSink sink = new SortingUrlSink(work, 10000L, target);
+		for (final SitemapUrl url : shuffledUrls(20000, 3L)) {
+			sink.add(url);
+		}
+		sink.finish();
+		assertEquals(inMemory, target.urls);
+		assertTrue(sink.getRunCount() > SortingUrlSink.MAX_MERGE_WIDTH);
+		assertEquals(0, work.list().length);
+	}
+
+	@Test
+	public void testSpilledValues() throws IOException {
+		final Map<String, String> alternates = new LinkedHashMap<String, String>();
+		alternates.put("en", "http://example.org/b.html");
+		alternates.put("x-default", "http://example.org/b.html");
+		alternates.put("de", "http://example.org/de/b\u00e4.html");
+		final List<SitemapUrl> urls = new ArrayList<SitemapUrl>();
+		urls.add(new SitemapUrl("http://example.org/b.html", 1309737600000L, ChangeFreq.DAILY, Double.valueOf(0.8), alternates));
+		urls.add(new SitemapUrl("http://example.org/a.html", 0L, null));
+		urls.add(new SitemapUrl("http://example.org/b.html", 0L, null));
+		urls.add(new SitemapUrl("http://example.org/\u00e4.html", 5L, ChangeFreq.NEVER, Double.valueOf(0.1),
+				Collections.<String, String> emptyMap()));
+
+		// Every URL is spilled on its own, URLs with the same location keep their order
+		final List<SitemapUrl> sorted = sort(urls, 1L, folder.newFolder("work"));
+		assertEquals(urls.get(1), sorted.get(0));
+		assertEquals(urls.get(0), sorted.get(1));
+		assertEquals(new ArrayList<String>(alternates.keySet()), new ArrayList<String>(sorted.get(1).getAlternates().keySet()));
+		assertEquals(urls.get(2), sorted.get(2));
+		assertEquals(urls.get(3), sorted.get(3));
+	}
+
+}
@@ -0,0 +1,55 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SourceTimestampIndexTest {
+
+	private static File touch(final File dir, final String path, final long lastModified) throws IOException {
+		final File file = new File(dir, path);
+		file.getParentFile().mkdirs();
+		file.createNewFile();
+		file.setLastModified(lastModified);
+		return file;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDocumentsAreMappedToPages() throws Exception {
+		final File site = folder.newFolder("site");
+		touch(site, "apt/index.apt", 1000000L);
+		touch(site, "xdoc/guide/usage.xml.vm", 2000000L);
+		touch(site, "resources/download.html", 3000000L);
+		touch(site, "fr/apt/index.apt", 4000000L);
+
+		final SourceTimestampIndex index = SourceTimestampIndex.build(site);
+		assertEquals(1000000L, index.getLastModified(null, "index.html"));
+		assertEquals(1000000L, index.getLastModified(null, "/index.html"));
+		assertEquals(1000000L, index.getLastModified(null, "./"));
+		assertEquals(2000000L, index.getLastModified(null, "guide/usage.html#top"));
+		assertEquals(3000000L, index.getLastModified(null, "download.html"));
+		assertEquals(4000000L, index.getLastModified("fr", "index.html"));
+		assertEquals(3000000L, index.getLastModified("fr", "download.html"));
+		assertEquals(0L, index.getLastModified(null, "http://maven.apache.org/index.html"));
+		assertEquals(0L, index.getLastModified(null, "missing.html"));
+	}
+
+	@Test
+	public void testLatestModificationWins() throws Exception {
+		final File site = folder.newFolder("site");
+		final File generated = folder.newFolder("generated-site");
+		touch(site, "apt/index.apt", 1000000L);
+		touch(generated, "xdoc/index.xml", 2000000L);
+
+		assertEquals(2000000L, SourceTimestampIndex.build(site, generated).getLastModified(null, "index.html"));
+	}
+
+}
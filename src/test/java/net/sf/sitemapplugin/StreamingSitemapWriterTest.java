@@ -0,0 +1,242 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class StreamingSitemapWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStreamingValidation() throws Exception {
+		final File dir = folder.newFolder("streaming");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://Example.org/site", dir, "sitemap");
+		writer.setStreamingValidation(true);
+		writer.add(new SitemapUrl("http://example.org/site/index.html", 0L, null));
+
+		final char[] longPath = new char[StreamingSitemapWriter.MAX_URL_LENGTH];
+		Arrays.fill(longPath, 'a');
+		for (final String invalid : Arrays.asList("/index.html", "ftp://example.org/index.html",
+				"https://example.org/index.html", "http://example.com/index.html", "http://example.org/" + new String(longPath),
+				"http://example.org/a\u0001b.html", "http://example.org/\ud800.html")) {
+			try {
+				writer.add(new SitemapUrl(invalid, 0L, null));
+				fail("Accepted " + invalid);
+			} catch (final InvalidSitemapUrlException e) {
+				assertEquals(invalid, e.getLocation());
+				assertNull(e.getMenuPath());
+			}
+		}
+		try {
+			writer.add(new SitemapUrl("http://example.org/site/priority.html", 0L, null, Double.valueOf(1.5),
+					Collections.<String, String> emptyMap()));
+			fail("Accepted priority 1.5");
+		} catch (final InvalidSitemapUrlException e) {
+			assertEquals("http://example.org/site/priority.html", e.getLocation());
+		}
+		writer.add(new SitemapUrl("http://example.org/\ud83d\ude00.html", 0L, null, Double.valueOf(0.5),
+				Collections.<String, String> emptyMap()));
+		writer.finish();
+
+		final String content = FileUtils.fileRead(writer.getFiles().get(0), "UTF-8");
+		assertEquals(2, content.split("<url>").length - 1);
+		assertTrue(content.contains("<priority>0.5</priority>"));
+	}
+
+	@Test
+	public void testSingleShard() throws Exception {
+		final File dir = folder.newFolder("single");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		writer.add(new SitemapUrl("http://example.org/index.html?a=1&b=2", 0L, ChangeFreq.MONTHLY));
+		writer.finish();
+
+		assertEquals(1, writer.getFiles().size());
+		assertEquals(new File(dir, Sitemap.FILE_NAME), writer.getFiles().get(0));
+		assertTrue(!new File(dir, Sitemap.INDEX_FILE_NAME).exists());
+		final String content = FileUtils.fileRead(writer.getFiles().get(0), "UTF-8");
+		assertTrue(content.contains("<loc>http://example.org/index.html?a=1&amp;b=2</loc>"));
+		assertTrue(content.contains("<changefreq>monthly</changefreq>"));
+		assertTrue(content.endsWith("</urlset>"));
+	}
+
+	@Test
+	public void testOtherHostsAreRejected() throws Exception {
+		final File dir = folder.newFolder("hosts");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://Example.org/site", dir, "sitemap");
+		writer.add(new SitemapUrl("http://example.org/site/index.html", 0L, null));
+		writer.add(new SitemapUrl("HTTP://EXAMPLE.ORG/about.html", 0L, null));
+		for (final String invalid : Arrays.asList("http://example.com/index.html", "http://example.org.com/index.html",
+				"https://example.org/index.html")) {
+			try {
+				writer.add(new SitemapUrl(invalid, 0L, null));
+				fail("Accepted " + invalid);
+			} catch (final InvalidSitemapUrlException e) {
+				assertEquals(invalid, e.getLocation());
+			}
+		}
+		writer.finish();
+		assertEquals(2, writer.getUrlCount());
+	}
+
+	@Test
+	public void testAlternates() throws Exception {
+		final File dir = folder.newFolder("alternates");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		final Map<String, String> alternates = new LinkedHashMap<String, String>();
+		alternates.put("en", "http://example.org/index.html");
+		alternates.put("de", "http://example.org/de/index.html");
+		writer.add(new SitemapUrl("http://example.org/de/index.html", 0L, null, alternates));
+		writer.finish();
+
+		final String content = FileUtils.fileRead(writer.getFiles().get(0), "UTF-8");
+		assertTrue(content.contains("xmlns:xhtml=\"http://www.w3.org/1999/xhtml\""));
+		assertTrue(content.contains("<xhtml:link rel=\"alternate\" hreflang=\"en\" href=\"http://example.org/index.html\"/>"));
+		assertTrue(content.contains("<xhtml:link rel=\"alternate\" hreflang=\"de\" href=\"http://example.org/de/index.html\"/>"));
+	}
+
+	@Test
+	public void testCompressedShards() throws Exception {
+		final File dir = folder.newFolder("compressed");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		writer.setCompressionLevel(9);
+		writer.setCompressionThreads(2);
+		for (int i = 0; i < StreamingSitemapWriter.MAX_URLS * 2 + 1; i++) {
+			writer.add(new SitemapUrl("http://example.org/page" + i + ".html", 0L, null));
+		}
+		writer.finish();
+
+		assertEquals(3, writer.getFiles().size());
+		for (final File file : writer.getFiles()) {
+			assertTrue(file.getName().endsWith(".xml.gz"));
+			assertTrue(file.exists());
+			assertTrue(!new File(dir, file.getName().replace(".gz", "")).exists());
+		}
+		final String index = FileUtils.fileRead(new File(dir, Sitemap.INDEX_FILE_NAME), "UTF-8");
+		assertTrue(index.contains("<loc>http://example.org/sitemap3.xml.gz</loc>"));
+	}
+
+	@Test
+	public void testShardsAreRolledOverAndIndexed() throws Exception {
+		final File dir = folder.newFolder("sharded");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		for (int i = 0; i <= StreamingSitemapWriter.MAX_URLS; i++) {
+			writer.add(new SitemapUrl("http://example.org/page" + i + ".html", 1000000L, ChangeFreq.DAILY));
+		}
+		writer.finish();
+
+		assertEquals(StreamingSitemapWriter.MAX_URLS + 1, writer.getUrlCount());
+		assertEquals(2, writer.getFiles().size());
+		assertEquals("sitemap1.xml", writer.getFiles().get(0).getName());
+		assertEquals("sitemap2.xml", writer.getFiles().get(1).getName());
+		final String index = FileUtils.fileRead(new File(dir, Sitemap.INDEX_FILE_NAME), "UTF-8");
+		assertTrue(index.contains("<loc>http://example.org/sitemap1.xml</loc>"));
+		assertTrue(index.contains("<loc>http://example.org/sitemap2.xml</loc>"));
+	}
+
+	@Test
+	public void testUnchangedShardsAreKept() throws Exception {
+		final File dir = folder.newFolder("unchanged");
+		write(dir, 0);
+		final long past = 1000000000000L;
+		new File(dir, "sitemap1.xml").setLastModified(past);
+		new File(dir, "sitemap2.xml").setLastModified(past);
+
+		// The index picks up the modification times of the shards
+		assertEquals(2, write(dir, 0).getUnchangedFileCount());
+		assertEquals(past, new File(dir, "sitemap1.xml").lastModified());
+		assertEquals(past, new File(dir, "sitemap2.xml").lastModified());
+		new File(dir, Sitemap.INDEX_FILE_NAME).setLastModified(past);
+		assertEquals(3, write(dir, 0).getUnchangedFileCount());
+		assertEquals(past, new File(dir, Sitemap.INDEX_FILE_NAME).lastModified());
+
+		// Only the second shard and the index carry the new page
+		final StreamingSitemapWriter changed = write(dir, 1);
+		assertEquals(1, changed.getUnchangedFileCount());
+		assertEquals(past, new File(dir, "sitemap1.xml").lastModified());
+		final long modified = new File(dir, "sitemap2.xml").lastModified();
+		assertTrue(modified > past);
+		final String index = FileUtils.fileRead(new File(dir, Sitemap.INDEX_FILE_NAME), "UTF-8");
+		assertTrue(index.contains("<lastmod>" + changed.getDateFormat().format(new Date(past)) + "</lastmod>"));
+		assertTrue(index.contains("<lastmod>" + changed.getDateFormat().format(new Date(modified)) + "</lastmod>"));
+		assertArrayEquals(new String[] { "sitemap1.xml", "sitemap2.xml", Sitemap.INDEX_FILE_NAME }, sortedNames(dir));
+	}
+
+	@Test
+	public void testStaleFilesAreDeleted() throws Exception {
+		final File dir = folder.newFolder("stale");
+		write(dir, 0);
+		new File(dir, "sitemap.xml.gz").createNewFile();
+		new File(dir, "sitemap-module.xml").createNewFile();
+
+		// A smaller run leaves a single shard and no index behind
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		writer.add(new SitemapUrl("http://example.org/index.html", 0L, null));
+		writer.finish();
+
+		assertEquals(4, writer.getDeletedFiles().size());
+		assertArrayEquals(new String[] { "sitemap-module.xml", "sitemap.xml" }, sortedNames(dir));
+	}
+
+	@Test
+	public void testAbortDeletesTemporaryFiles() throws Exception {
+		final File dir = folder.newFolder("aborted");
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		writer.setCompressionLevel(1);
+		for (int i = 0; i < StreamingSitemapWriter.MAX_URLS * 2 + 1; i++) {
+			writer.add(new SitemapUrl("http://example.org/page" + i + ".html", 0L, null));
+		}
+		// As left behind by an index which could not be validated
+		FileReplacer.tempFile(new File(dir, Sitemap.INDEX_FILE_NAME)).createNewFile();
+		writer.abort();
+
+		// The shards compressed in the background before are kept, queued ones and the open shard are dropped
+		for (final String name : sortedNames(dir)) {
+			assertTrue(name, name.equals("sitemap1.xml.gz") || name.equals("sitemap2.xml.gz"));
+		}
+
+		// Aborting a finished sitemap keeps its files
+		final StreamingSitemapWriter finished = write(dir, 0);
+		finished.abort();
+		assertArrayEquals(new String[] { "sitemap1.xml", "sitemap2.xml", Sitemap.INDEX_FILE_NAME }, sortedNames(dir));
+	}
+
+	private static String[] sortedNames(final File dir) {
+		final String[] names = dir.list();
+		Arrays.sort(names);
+		return names;
+	}
+
+	private static StreamingSitemapWriter write(final File dir, final int extraPages) throws Exception {
+		final StreamingSitemapWriter writer = new StreamingSitemapWriter("http://example.org/", dir, "sitemap");
+		writer.setIndexFile(new File(dir, Sitemap.INDEX_FILE_NAME));
+		for (int i = 0; i < StreamingSitemapWriter.MAX_URLS + 1 + extraPages; i++) {
+			writer.add(new SitemapUrl("http://example.org/page" + i + ".html", 0L, null));
+		}
+		writer.finish();
+		return writer;
+	}
+
+}
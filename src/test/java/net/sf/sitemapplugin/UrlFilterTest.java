@@ -0,0 +1,121 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.redfin.sitemapgenerator.ChangeFreq;
+
+public class UrlFilterTest {
+
+	private static final class CollectingSink implements UrlSink {
+
+		private final List<String> locations = new ArrayList<String>();
+
+		@Override
+		public void add(final SitemapUrl url) {
+			locations.add(url.getLocation());
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	private static boolean accept(final UrlFilter filter, final String path) {
+		return filter.accept(path, new int[filter.getRules().size()]);
+	}
+
+	@Test
+	public void testExcludes() {
+		final UrlFilter filter = new UrlFilter(null, Arrays.asList("apidocs/", "**/xref/**", "archive/*/**", "staging/page?.html"));
+		assertTrue(accept(filter, "index.html"));
+		assertTrue(accept(filter, "apidocs.html"));
+		assertFalse(accept(filter, "apidocs/"));
+		assertFalse(accept(filter, "apidocs/net/sf/Sitemap.html"));
+		assertFalse(accept(filter, "xref/index.html"));
+		assertFalse(accept(filter, "module/xref/net/Sitemap.html"));
+		assertTrue(accept(filter, "module/xref-test.html"));
+		assertFalse(accept(filter, "archive/1.0/index.html"));
+		assertFalse(accept(filter, "archive/index.html"));
+		assertTrue(accept(filter, "archive.html"));
+		assertFalse(accept(filter, "staging/page1.html"));
+		assertTrue(accept(filter, "staging/page10.html"));
+	}
+
+	@Test
+	public void testIncludesAndExcludes() {
+		final UrlFilter filter = new UrlFilter(Arrays.asList("guide/**", "*.html"), Arrays.asList("guide/draft-*.html"));
+		assertEquals(Arrays.asList("include guide/**", "include *.html", "exclude guide/draft-*.html"), filter.getRules());
+		final int[] counts = new int[3];
+		assertTrue(filter.accept("index.html", counts));
+		assertTrue(filter.accept("guide/usage.html", counts));
+		assertFalse(filter.accept("guide/draft-1.html", counts));
+		assertFalse(filter.accept("apidocs/index.html", counts));
+		assertArrayEquals(new int[] { 2, 1, 1 }, counts);
+	}
+
+	@Test
+	public void testManyPatterns() {
+		final List<String> excludes = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++) {
+			excludes.add("archive/" + i + "/");
+		}
+		final UrlFilter filter = new UrlFilter(null, excludes);
+		final int[] counts = new int[excludes.size()];
+		for (int i = 0; i < 20000; i++) {
+			assertEquals(i >= 10000, filter.accept("archive/" + i + "/index.html", counts));
+		}
+		assertEquals(1, counts[0]);
+		assertEquals(1, counts[9999]);
+	}
+
+	@Test
+	public void testMatches() {
+		assertTrue(UrlFilter.matches("*", ""));
+		assertTrue(UrlFilter.matches("*.html", "index.html"));
+		assertFalse(UrlFilter.matches("*.html", "index.htm"));
+		assertTrue(UrlFilter.matches("a*b*c", "aXbYbZc"));
+		assertFalse(UrlFilter.matches("a*b*c", "aXbYbZ"));
+		assertTrue(UrlFilter.matches("page?.html", "page1.html"));
+		assertFalse(UrlFilter.matches("page?.html", "page.html"));
+	}
+
+	@Test
+	public void testSink() throws IOException {
+		final CollectingSink target = new CollectingSink();
+		final FilteringUrlSink sink = new FilteringUrlSink("http://example.org/site", new UrlFilter(null,
+				Collections.singletonList("apidocs/")), target);
+		sink.add(new SitemapUrl("http://example.org/site/index.html", 0L, ChangeFreq.WEEKLY));
+		sink.add(new SitemapUrl("http://example.org/site/apidocs/index.html?overview", 0L, ChangeFreq.WEEKLY));
+		sink.add(new SitemapUrl("http://other.org/apidocs/index.html", 0L, ChangeFreq.WEEKLY));
+		sink.finish();
+		assertEquals(Collections.singletonList("http://example.org/site/index.html"), target.locations);
+		assertEquals(2, sink.getDroppedCount());
+		assertEquals(Collections.singletonMap("exclude apidocs/", Integer.valueOf(2)), sink.getMatchCounts());
+	}
+
+	@Test
+	public void testSinkNormalizesBaseUrl() throws IOException {
+		final CollectingSink target = new CollectingSink();
+		final FilteringUrlSink sink = new FilteringUrlSink("HTTP://Example.org/docs/../site", new UrlFilter(null,
+				Collections.singletonList("apidocs/")), target);
+		sink.add(new SitemapUrl(NormalizingUrlSink.normalize("HTTP://Example.org/site/index.html"), 0L, ChangeFreq.WEEKLY));
+		sink.add(new SitemapUrl(NormalizingUrlSink.normalize("HTTP://Example.org/site/apidocs/index.html"), 0L,
+				ChangeFreq.WEEKLY));
+		sink.finish();
+		assertEquals(Collections.singletonList("http://example.org/site/index.html"), target.locations);
+		assertEquals(1, sink.getDroppedCount());
+	}
+
+}
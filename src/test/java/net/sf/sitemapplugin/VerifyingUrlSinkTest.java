@@ -0,0 +1,139 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VerifyingUrlSinkTest {
+
+	private static final class CollectingSink implements UrlSink {
+
+		private final List<String> locations = new ArrayList<String>();
+
+		@Override
+		public void add(final SitemapUrl url) {
+			locations.add(url.getLocation());
+		}
+
+		@Override
+		public void finish() {
+		}
+
+	}
+
+	private static final int THREADS = 4;
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File createSite() throws IOException {
+		final File site = folder.newFolder("site");
+		new File(site, "guide").mkdirs();
+		new File(site, "index.html").createNewFile();
+		new File(site, "guide/index.html").createNewFile();
+		new File(site, "guide/a b+c.html").createNewFile();
+		return site;
+	}
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testDrop() throws IOException {
+		final RenderedPages pages = new RenderedPages("http://example.org/site", createSite());
+		final CollectingSink target = new CollectingSink();
+		final VerifyingUrlSink sink = new VerifyingUrlSink(pages, VerifyingUrlSink.Action.DROP, executor, THREADS, target);
+		for (final String location : Arrays.asList("http://example.org/site/", "http://example.org/site/missing.html",
+				"http://example.org/site/guide/", "http://example.org/site/guide/a%20b+c.html?x=1#top",
+				"http://example.org/site/Index.html", "http://example.org/other/index.html")) {
+			sink.add(new SitemapUrl(location, 0L, null));
+		}
+		sink.finish();
+
+		assertEquals(Arrays.asList("http://example.org/site/", "http://example.org/site/guide/",
+				"http://example.org/site/guide/a%20b+c.html?x=1#top", "http://example.org/other/index.html"), target.locations);
+		assertEquals(6, sink.getCheckedCount());
+		assertEquals(2, sink.getMissingCount());
+		assertEquals(Arrays.asList("http://example.org/site/missing.html", "http://example.org/site/Index.html"), sink.getMissing());
+	}
+
+	@Test
+	public void testGetFile() throws IOException {
+		final File site = createSite();
+		final RenderedPages pages = new RenderedPages("http://example.org/", site);
+		assertEquals(new File(site, "index.html"), pages.getFile("http://example.org/"));
+		assertEquals(new File(site, "guide" + File.separator + "a b+c.html"), pages.getFile("http://example.org/guide/a%20b+c.html"));
+		assertEquals(new File(site, "guide"), pages.getFile("http://example.org/guide"));
+		assertTrue(pages.exists(pages.getFile("http://example.org/guide")));
+		assertNull(pages.getFile("http://example.com/index.html"));
+	}
+
+	@Test
+	public void testGetFileNormalizesBaseUrl() throws IOException {
+		final File site = createSite();
+		final RenderedPages pages = new RenderedPages("HTTP://Example.org/docs/../site", site);
+		assertEquals(new File(site, "index.html"), pages.getFile(NormalizingUrlSink.normalize("HTTP://Example.org/site/")));
+		assertEquals(new File(site, "guide" + File.separator + "index.html"), pages.getFile("http://example.org/site/guide/"));
+	}
+
+	@Test
+	public void testManyUrls() throws IOException {
+		final File site = folder.newFolder("many");
+		for (int i = 0; i < 10000; i++) {
+			final File dir = new File(site, "section" + i % 100);
+			dir.mkdirs();
+			new File(dir, "page" + i + ".html").createNewFile();
+		}
+
+		final CollectingSink target = new CollectingSink();
+		final VerifyingUrlSink sink = new VerifyingUrlSink(new RenderedPages("http://example.org/", site), VerifyingUrlSink.Action.WARN,
+				executor, THREADS, target);
+		final int urls = 100000;
+		for (int i = 0; i < urls; i++) {
+			sink.add(new SitemapUrl("http://example.org/section" + i % 100 + "/page" + i + ".html", 0L, null));
+		}
+		sink.finish();
+
+		assertEquals(urls, target.locations.size());
+		assertEquals("http://example.org/section99/page99999.html", target.locations.get(urls - 1));
+		assertEquals(urls - 10000, sink.getMissingCount());
+		assertEquals(VerifyingUrlSink.MAX_REPORTED, sink.getMissing().size());
+		assertEquals("http://example.org/section0/page10000.html", sink.getMissing().get(0));
+		assertTrue(sink.getTime() / 1000000L + " ms", sink.getTime() < 1000000000L);
+	}
+
+	@Test
+	public void testPassThrough() throws IOException {
+		final RenderedPages pages = new RenderedPages("http://example.org/", createSite());
+		final CollectingSink target = new CollectingSink();
+		final VerifyingUrlSink sink = new VerifyingUrlSink(pages, VerifyingUrlSink.Action.DROP, executor, THREADS, target);
+		sink.add(new SitemapUrl("http://example.org/missing.html", 0L, null));
+		sink.add(new SitemapUrl("http://example.org/index.html", 0L, null));
+		// Merged entries of pages rendered by an earlier build
+		sink.passThrough();
+		sink.add(new SitemapUrl("http://example.org/v1/index.html", 0L, null));
+		sink.finish();
+
+		assertEquals(Arrays.asList("http://example.org/index.html", "http://example.org/v1/index.html"), target.locations);
+		assertEquals(2, sink.getCheckedCount());
+		assertEquals(1, sink.getMissingCount());
+	}
+
+}
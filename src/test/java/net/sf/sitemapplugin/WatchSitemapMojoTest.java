@@ -0,0 +1,39 @@
+package net.sf.sitemapplugin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.Test;
+
+public class WatchSitemapMojoTest {
+
+	private static final List<Locale> LOCALES = Arrays.asList(Locale.ENGLISH, Locale.FRENCH, Locale.GERMAN);
+
+	@Test
+	public void testGetAffectedLocales() {
+		assertEquals(Collections.singleton(Locale.FRENCH), WatchSitemapMojo.getAffectedLocales(Arrays.asList("site_fr.xml"), LOCALES));
+		assertEquals(Collections.singleton(Locale.GERMAN),
+				WatchSitemapMojo.getAffectedLocales(Arrays.asList("de/apt/index.apt"), LOCALES));
+		assertEquals(Collections.singleton(Locale.ENGLISH), WatchSitemapMojo.getAffectedLocales(Arrays.asList("apt/index.apt"), LOCALES));
+		assertEquals(Collections.singleton(Locale.ENGLISH), WatchSitemapMojo.getAffectedLocales(Arrays.asList("site_en.xml"), LOCALES));
+		assertEquals(Arrays.asList(Locale.ENGLISH, Locale.GERMAN),
+				Arrays.asList(WatchSitemapMojo.getAffectedLocales(Arrays.asList("de/index.html", "xdoc/a.xml"), LOCALES).toArray()));
+		assertEquals(LOCALES,
+				Arrays.asList(WatchSitemapMojo.getAffectedLocales(Arrays.asList("site_fr.xml", "site.xml"), LOCALES).toArray()));
+	}
+
+	@Test
+	public void testIsSiteDescriptor() {
+		assertTrue(WatchSitemapMojo.isSiteDescriptor("site.xml"));
+		assertTrue(WatchSitemapMojo.isSiteDescriptor("site_fr.xml"));
+		assertFalse(WatchSitemapMojo.isSiteDescriptor("xdoc/site_fr.xml"));
+		assertFalse(WatchSitemapMojo.isSiteDescriptor("xdoc/index.xml"));
+	}
+
+}